@@ -0,0 +1,91 @@
+package org.jepria.tools.mavenplugin.collisioncheck;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class file entries of the zip archives (wars, jars), shared by the {@link War} and the {@link ServerLib} implementations.
+ */
+public class ClassEntries {
+
+  /**
+   * Class file entry path relative to the classpath root
+   */
+  protected static final Pattern classPattern = Pattern.compile("(.+/)?(.+)\\.class");
+
+  /**
+   * Multi-release jar classes, loaded instead of the base ones on the newer JVMs only
+   */
+  protected static final String multiReleaseVersionsPrefix = "META-INF/versions/";
+
+  public interface InputStreamSupplier {
+    InputStream newInputStream() throws IOException;
+  }
+
+  /**
+   * @param entryName the entry path relative to the classpath root, e.g. {@code java/util/List.class}
+   * @return the canonical classname, e.g. {@code java.util.List}, or {@code null} if the entry is not a class file
+   * or is excluded from the check ({@code module-info}, {@code package-info}, {@code META-INF/versions/**})
+   */
+  public static String canonicalClassName(String entryName) {
+    if (entryName.startsWith(multiReleaseVersionsPrefix)) {
+      return null;
+    }
+    Matcher classMatcher = classPattern.matcher(entryName);
+    if (!classMatcher.matches()) {
+      return null;
+    }
+    String path = classMatcher.group(1);
+    String name = classMatcher.group(2);
+    if ("module-info".equals(name) || "package-info".equals(name)) {
+      // the descriptors, not the classes
+      return null;
+    }
+    return (path == null ? "" : path.replaceAll("/", ".")) + name;
+  }
+
+  /**
+   * @param entryName the entry path relative to the classpath root
+   * @return whether the entry is a class file to check
+   */
+  public static boolean isClass(String entryName) {
+    return canonicalClassName(entryName) != null;
+  }
+
+  /**
+   * @param canonicalClassName
+   * @param size the class file size, {@code -1} if unknown
+   * @param crc the class file CRC-32, {@code -1} if unknown
+   * @param inputStreamSupplier
+   * @return
+   */
+  public static ClassFile newClassFile(String canonicalClassName, long size, long crc, InputStreamSupplier inputStreamSupplier) {
+    return new ClassFile() {
+      @Override
+      public String canonicalClassName() {
+        return canonicalClassName;
+      }
+
+      @Override
+      public InputStream newInputStream() {
+        try {
+          return inputStreamSupplier.newInputStream();
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+
+      @Override
+      public long size() {
+        return size;
+      }
+
+      @Override
+      public long crc() {
+        return crc;
+      }
+    };
+  }
+}
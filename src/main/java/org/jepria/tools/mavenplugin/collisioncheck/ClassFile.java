@@ -42,4 +42,22 @@ public interface ClassFile {
   }
 
   InputStream newInputStream();
+
+  /**
+   * Uncompressed class file size in bytes
+   *
+   * @return {@code -1} if unknown
+   */
+  default long size() {
+    return -1;
+  }
+
+  /**
+   * CRC-32 of the class file content, allows to compare the classes without reading them
+   *
+   * @return {@code -1} if unknown
+   */
+  default long crc() {
+    return -1;
+  }
 }
@@ -11,12 +11,13 @@ public class CollisionAnalyzer {
   public static class Location {
     enum Type {
       WEBINF_CLASSES,
-      WEBINF_LIB_JAR
+      WEBINF_LIB_JAR,
+      SERVER_LIB_JAR
     }
 
     public Type type;
     /**
-     * Only if {@link #type} == {@link Type#WEBINF_LIB_JAR}
+     * Only if {@link #type} == {@link Type#WEBINF_LIB_JAR} or {@link Type#SERVER_LIB_JAR}
      */
     public LibJar libJar;
   }
@@ -57,6 +58,37 @@ public class CollisionAnalyzer {
     }
   }
 
+  /**
+   * Duplicate classes within the same war. The WEB-INF/classes take precedence over the WEB-INF/lib/*.jar,
+   * while the loading order among the WEB-INF/lib/*.jar is unspecified.
+   */
+  public static class IntraWarDuplicates {
+    /**
+     * Identical jar tuples in WEB-INF/lib
+     */
+    public Set<LibJarTuple> identicalJarTuples;
+
+    /**
+     * Identical classes in [WEB-INF/lib/*.jar x WEB-INF/lib/*.jar] tuples
+     */
+    public Map<LibJarTuple, Collection<ClassCollision>> identicalClassesInJarTuples;
+
+    /**
+     * Class collisions in [WEB-INF/lib/*.jar x WEB-INF/lib/*.jar] tuples, the loaded class depends on the jar order
+     */
+    public Map<LibJarTuple, Collection<ClassCollision>> collisionsInJarTuples;
+
+    /**
+     * WEB-INF/classes (the first location) identical to the WEB-INF/lib/*.jar classes (the second location)
+     */
+    public Collection<ClassCollision> identicalShadowedClasses;
+
+    /**
+     * WEB-INF/classes (the first location) shadowing the different WEB-INF/lib/*.jar classes (the second location)
+     */
+    public Collection<ClassCollision> shadowedClasses;
+  }
+
   public static class CollisionAnalyzeResult {
     /**
      * Identical classes in [WEB-INF/lib/*.jar x WEB-INF/lib/*.jar] tuples
@@ -77,9 +109,41 @@ public class CollisionAnalyzer {
      * Class collisions in [WEB-INF/classes x WEB-INF/lib/*.jars], [WEB-INF/lib/*.jars x WEB-INF/classes], [WEB-INF/classes x WEB-INF/classes]
      */
     public Collection<ClassCollision> collisionsOther;
+
+    /**
+     * Collisions of the first war against the server lib (the second location is always the server lib),
+     * {@code null} if no server lib analyzed
+     */
+    public CollisionAnalyzeResult serverLibResult1;
+
+    /**
+     * Collisions of the second war against the server lib (the second location is always the server lib),
+     * {@code null} if no server lib analyzed
+     */
+    public CollisionAnalyzeResult serverLibResult2;
+
+    /**
+     * Duplicate classes within the first war, {@code null} for the server lib results
+     */
+    public IntraWarDuplicates intraWarDuplicates1;
+
+    /**
+     * Duplicate classes within the second war, {@code null} for the server lib results
+     */
+    public IntraWarDuplicates intraWarDuplicates2;
   }
 
   public static CollisionAnalyzeResult analyzeCollisions(War war1, War war2) {
+    return analyzeCollisions(war1, war2, null);
+  }
+
+  /**
+   * @param war1
+   * @param war2
+   * @param serverLib the server lib to analyze both wars against, nullable
+   * @return
+   */
+  public static CollisionAnalyzeResult analyzeCollisions(War war1, War war2, ServerLib serverLib) {
 
     // collect class entries from both WEB-INF/lib/*.jar and WEB-INF/lib/classes
     List<ClassFileWithLocation> classes1 = new ArrayList<>();
@@ -129,20 +193,126 @@ public class CollisionAnalyzer {
       }
     }
 
-    // collect collisions by canonical classnames between the two wars
-    // do not find collisions within the same war (if so, this is a build mistake)
+    // index the server lib and the second war classes by canonical classnames to join in a single pass instead of comparing every class pair
+    Map<String, List<ClassFileWithLocation>> serverLibClassesByName = new HashMap<>();
+    if (serverLib != null) {
+      for (LibJar libJar : serverLib.listLibJars()) {
+        for (ClassFile c : libJar.listClasses()) {
+          ClassFileWithLocation cwl = new ClassFileWithLocation();
+          cwl.classFile = c;
+          Location loc = new Location();
+          loc.type = Location.Type.SERVER_LIB_JAR;
+          loc.libJar = libJar;
+          cwl.location = loc;
+          serverLibClassesByName.computeIfAbsent(c.canonicalClassName(), k -> new ArrayList<>()).add(cwl);
+        }
+      }
+    }
+
+    // the second war is joined with the server lib and with itself (for the intra-war duplicates) while being indexed
+    List<ClassCollision> serverLibCollisions2 = new ArrayList<>();
+    List<ClassCollision> intraWarCollisions2 = new ArrayList<>();
+    Map<String, List<ClassFileWithLocation>> classes2ByName = new HashMap<>();
+    for (ClassFileWithLocation c2 : classes2) {
+      indexClass(c2, classes2ByName, intraWarCollisions2);
+      addCollisions(c2, serverLibClassesByName, serverLibCollisions2);
+    }
+
+    // collect collisions by canonical classnames between the two wars (and between each war and the server lib)
+    // collisions within the same war are build mistakes, collected separately
     List<ClassCollision> collisions = new ArrayList<>();
+    List<ClassCollision> serverLibCollisions1 = new ArrayList<>();
+    List<ClassCollision> intraWarCollisions1 = new ArrayList<>();
+    Map<String, List<ClassFileWithLocation>> classes1ByName = new HashMap<>();
     for (ClassFileWithLocation c1 : classes1) {
-      for (ClassFileWithLocation c2 : classes2) {
-        if (c1.classFile.canonicalClassName().equals(c2.classFile.canonicalClassName())) {
-          ClassCollision col = new ClassCollision();
-          col.class1 = c1;
-          col.class2 = c2;
-          collisions.add(col);
-          // do not break, check further class collisions
-        }
+      indexClass(c1, classes1ByName, intraWarCollisions1);
+      addCollisions(c1, classes2ByName, collisions);
+      addCollisions(c1, serverLibClassesByName, serverLibCollisions1);
+    }
+
+    CollisionAnalyzeResult result = groupCollisions(collisions);
+    result.intraWarDuplicates1 = groupIntraWarCollisions(intraWarCollisions1);
+    result.intraWarDuplicates2 = groupIntraWarCollisions(intraWarCollisions2);
+    if (serverLib != null) {
+      result.serverLibResult1 = groupCollisions(serverLibCollisions1);
+      result.serverLibResult2 = groupCollisions(serverLibCollisions2);
+    }
+    return result;
+  }
+
+  /**
+   * Adds the collisions of the class with the same-named classes of the index
+   *
+   * @param c1
+   * @param classes2ByName
+   * @param collisions
+   */
+  private static void addCollisions(ClassFileWithLocation c1, Map<String, List<ClassFileWithLocation>> classes2ByName, List<ClassCollision> collisions) {
+    List<ClassFileWithLocation> sameName = classes2ByName.get(c1.classFile.canonicalClassName());
+    if (sameName != null) {
+      for (ClassFileWithLocation c2 : sameName) {
+        ClassCollision col = new ClassCollision();
+        col.class1 = c1;
+        col.class2 = c2;
+        collisions.add(col);
+        // do not break, check further class collisions
       }
     }
+  }
+
+  /**
+   * Adds the class to the index of the same war, collecting its collisions with the same-named classes already indexed
+   * (the earlier indexed class is the first location, so that WEB-INF/classes always come first)
+   *
+   * @param c
+   * @param classesByName
+   * @param intraWarCollisions
+   */
+  private static void indexClass(ClassFileWithLocation c, Map<String, List<ClassFileWithLocation>> classesByName, List<ClassCollision> intraWarCollisions) {
+    List<ClassFileWithLocation> sameName = classesByName.computeIfAbsent(c.classFile.canonicalClassName(), k -> new ArrayList<>());
+    for (ClassFileWithLocation prev : sameName) {
+      ClassCollision col = new ClassCollision();
+      col.class1 = prev;
+      col.class2 = c;
+      intraWarCollisions.add(col);
+    }
+    sameName.add(c);
+  }
+
+  private static IntraWarDuplicates groupIntraWarCollisions(List<ClassCollision> intraWarCollisions) {
+    // the jar names within a war are unique, so the duplicate jars are only recognized by the content
+    CollisionAnalyzeResult grouped = groupCollisions(intraWarCollisions, false);
+
+    IntraWarDuplicates duplicates = new IntraWarDuplicates();
+    duplicates.identicalJarTuples = grouped.identicalJarTuples;
+    duplicates.identicalClassesInJarTuples = grouped.identicalClassesInJarTuples;
+    duplicates.collisionsInJarTuples = grouped.collisionsInJarTuples;
+    duplicates.identicalShadowedClasses = new ArrayList<>();
+    duplicates.shadowedClasses = new ArrayList<>();
+
+    // the rest are [WEB-INF/classes x WEB-INF/lib/*.jar] collisions
+    for (ClassCollision collision : grouped.collisionsOther) {
+      if (classFilesEqual(collision.class1.classFile, collision.class2.classFile)) {
+        duplicates.identicalShadowedClasses.add(collision);
+      } else {
+        duplicates.shadowedClasses.add(collision);
+      }
+    }
+    return duplicates;
+  }
+
+  private static CollisionAnalyzeResult groupCollisions(List<ClassCollision> collisions) {
+    return groupCollisions(collisions, true);
+  }
+
+  /**
+   * Groups the collisions by jar tuples, checking the jar and the class identity
+   *
+   * @param collisions the collisions to group, the collisions in jar tuples are removed from the list
+   * @param requireSameJarName whether the identical jars must have the same names
+   * @return
+   */
+  private static CollisionAnalyzeResult groupCollisions(List<ClassCollision> collisions, boolean requireSameJarName) {
 
     // group collisions by jars
     Set<LibJarTuple> identicalJarTuples = new HashSet<>();
@@ -152,8 +322,7 @@ public class CollisionAnalyzer {
     Iterator<ClassCollision> it = collisions.iterator();
     while (it.hasNext()) {
       ClassCollision collision = it.next();
-      if (collision.class1.location.type == Location.Type.WEBINF_LIB_JAR
-              && collision.class2.location.type == Location.Type.WEBINF_LIB_JAR) {
+      if (collision.class1.location.libJar != null && collision.class2.location.libJar != null) {
         LibJarTuple libJarTuple = new LibJarTuple();
         libJarTuple.jar1 = collision.class1.location.libJar;
         libJarTuple.jar2 = collision.class2.location.libJar;
@@ -161,18 +330,12 @@ public class CollisionAnalyzer {
         if (!identicalJarTuples.contains(libJarTuple)) { // otherwise skip
 
           // check the entire jar tuple equality on the first collision in that tuple
-          if (libJarsEqual(libJarTuple.jar1, libJarTuple.jar2)) {
+          if (libJarsEqual(libJarTuple.jar1, libJarTuple.jar2, requireSameJarName)) {
             identicalJarTuples.add(libJarTuple);
 
           } else {
 
-            boolean identicalClasses;
-            try {
-              identicalClasses = inputsEqual(collision.class1.classFile.newInputStream(),
-                      collision.class2.classFile.newInputStream());
-            } catch (IOException e) {
-              throw new RuntimeException(e);
-            }
+            boolean identicalClasses = classFilesEqual(collision.class1.classFile, collision.class2.classFile);
 
             if (identicalClasses) {
               Collection<ClassCollision> identicalClassesInJarsElement =
@@ -198,7 +361,7 @@ public class CollisionAnalyzer {
     return result;
   }
 
-  private static boolean libJarsEqual(LibJar jar1, LibJar jar2) {
+  private static boolean libJarsEqual(LibJar jar1, LibJar jar2, boolean requireSameJarName) {
     if (jar1 == null && jar2 == null) {
       return true;
     } else if (jar1 == null || jar2 == null) {
@@ -207,7 +370,11 @@ public class CollisionAnalyzer {
       if (jar1 == jar2) {
         return true;
       } else {
-        if (jar1.jarName().equals(jar2.jarName())) {
+        if (!requireSameJarName || jar1.jarName().equals(jar2.jarName())) {
+          // decide by the digests if known, without reading the jars
+          if (jar1.size() != -1 && jar1.crc() != -1 && jar2.size() != -1 && jar2.crc() != -1) {
+            return jar1.size() == jar2.size() && jar1.crc() == jar2.crc();
+          }
           boolean contentsEqual;
           try {
             contentsEqual = inputsEqual(jar1.newInputStream(), jar2.newInputStream());
@@ -230,6 +397,10 @@ public class CollisionAnalyzer {
       return true;
     } else {
       if (class1.canonicalClassName().equals(class2.canonicalClassName())) {
+        // decide by the digests if known, without inflating the classes
+        if (class1.size() != -1 && class1.crc() != -1 && class2.size() != -1 && class2.crc() != -1) {
+          return class1.size() == class2.size() && class1.crc() == class2.crc();
+        }
         boolean contentsEqual;
         try {
           contentsEqual = inputsEqual(class1.newInputStream(), class2.newInputStream());
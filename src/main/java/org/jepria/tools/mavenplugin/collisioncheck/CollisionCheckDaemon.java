@@ -0,0 +1,639 @@
+package org.jepria.tools.mavenplugin.collisioncheck;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-lived collision check process, keeping the {@link LibJarIndexCache} resident between the checks.
+ * <br/>
+ * Listens on the loopback interface only. The protocol is line-based, UTF-8, tab-separated:
+ * <pre>
+ * request:  CHECK &lt;token&gt; &lt;version&gt; &lt;war1 path&gt; &lt;war1 name&gt; &lt;war2 path&gt; &lt;war2 name&gt; [&lt;option&gt;=&lt;value&gt; ...]
+ * response: (DEBUG|INFO|WARN|ERROR) &lt;message&gt;  (any number of lines)
+ *           END &lt;true|false: whether class collisions found&gt;
+ *        or FAILED &lt;message&gt;
+ *        or VERSION_MISMATCH &lt;daemon version&gt;  (the daemon exits, so that a daemon of the client version can be started)
+ *
+ * request:  STOP &lt;token&gt;
+ * </pre>
+ * The options are listed in {@link CheckRequest}.
+ * <br/>
+ * The daemon writes a random token to the {@link #tokenFile(int)} readable by the daemon user only
+ * and rejects (with {@code FAILED}) any request not carrying it, so that other users of the host
+ * can neither read the wars through the daemon nor stop it.
+ * The remaining risk: any process of the same user (or a superuser) is able to read the token and to use the daemon;
+ * while no daemon is running, any local process is able to listen on the port and to answer the checks
+ * with fake results (the client does not authenticate the daemon); on the file systems without POSIX permissions
+ * (e.g. Windows) the token file is restricted on the best effort basis, relying on the temp directory being private to the user.
+ * So the daemon mode is not to be used on the hosts shared with untrusted users where the check result matters.
+ * Usage: {@code java -cp <plugin classpath> org.jepria.tools.mavenplugin.collisioncheck.CollisionCheckDaemon [port [maxClassEntries [idleTimeoutMinutes]]]}
+ */
+public class CollisionCheckDaemon {
+
+  public static final int DEFAULT_PORT = 47611;
+
+  public static final int DEFAULT_MAX_CLASS_ENTRIES = 2_000_000;
+
+  public static final int DEFAULT_IDLE_TIMEOUT_MINUTES = 60;
+
+  /**
+   * Incremented on every incompatible change of the protocol
+   */
+  protected static final int PROTOCOL_VERSION = 2;
+
+  /**
+   * The protocol version along with the plugin build, so that the daemon of another plugin build is never used
+   */
+  public static final String VERSION = PROTOCOL_VERSION + ":" + buildId();
+
+  /**
+   * Socket timeout for the client waiting for the response
+   */
+  protected static final int CLIENT_READ_TIMEOUT_MILLIS = 10 * 60 * 1000;
+
+  protected final LibJarIndexCache libJarIndexCache;
+
+  protected final ServerSocket serverSocket;
+
+  /**
+   * The secret every request must carry, see {@link #writeToken(Path)}
+   */
+  protected final String token;
+
+  /**
+   * Server lib path to the server lib indexed by the daemon, reused as long as the fingerprint does not change
+   */
+  protected final Map<Path, SharedServerLib> serverLibs = new HashMap<>();
+
+  /**
+   * The server lib used by the concurrent checks. Once replaced, it is closed by the last check using it.
+   */
+  protected static class SharedServerLib {
+    public final ServerLibImpl serverLib;
+    /**
+     * The number of the checks using the server lib, guarded by {@link #serverLibs}
+     */
+    protected int users = 0;
+    /**
+     * Whether the server lib is outdated, guarded by {@link #serverLibs}
+     */
+    protected boolean replaced = false;
+
+    public SharedServerLib(ServerLibImpl serverLib) {
+      this.serverLib = serverLib;
+    }
+  }
+
+  protected volatile boolean stopped = false;
+
+  public CollisionCheckDaemon(int port, int maxClassEntries) throws IOException {
+    libJarIndexCache = new LibJarIndexCache(maxClassEntries);
+    serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+
+    byte[] tokenBytes = new byte[32];
+    new SecureRandom().nextBytes(tokenBytes);
+    StringBuilder sb = new StringBuilder();
+    for (byte b : tokenBytes) {
+      sb.append(String.format("%02x", b));
+    }
+    token = sb.toString();
+  }
+
+  public static void main(String[] args) throws IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+    int maxClassEntries = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_CLASS_ENTRIES;
+    int idleTimeoutMinutes = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_IDLE_TIMEOUT_MINUTES;
+
+    CollisionCheckDaemon daemon = new CollisionCheckDaemon(port, maxClassEntries);
+    Path tokenFile = tokenFile(daemon.serverSocket.getLocalPort());
+    daemon.writeToken(tokenFile);
+    try {
+      daemon.serve(idleTimeoutMinutes * 60 * 1000);
+    } finally {
+      daemon.deleteToken(tokenFile);
+    }
+  }
+
+  /**
+   * @param port
+   * @return the file the daemon listening on the port writes its token to
+   */
+  public static Path tokenFile(int port) {
+    return Paths.get(System.getProperty("java.io.tmpdir"), "collisioncheck-daemon-" + port + ".token");
+  }
+
+  /**
+   * Writes the token to the file readable and writable by the current user only
+   *
+   * @param tokenFile
+   * @throws IOException
+   */
+  protected void writeToken(Path tokenFile) throws IOException {
+    Path dir = tokenFile.toAbsolutePath().getParent();
+    String prefix = tokenFile.getFileName().toString();
+
+    final Path tmpFile;
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      tmpFile = Files.createTempFile(dir, prefix, ".tmp",
+              PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+    } else {
+      // best effort
+      tmpFile = Files.createTempFile(dir, prefix, ".tmp");
+      File file = tmpFile.toFile();
+      file.setReadable(false, false);
+      file.setReadable(true, true);
+      file.setWritable(false, false);
+      file.setWritable(true, true);
+    }
+
+    try {
+      Files.write(tmpFile, token.getBytes(StandardCharsets.UTF_8));
+      // the private file replaces any file at the path, never written through
+      Files.move(tmpFile, tokenFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmpFile);
+    }
+  }
+
+  /**
+   * Deletes the token file unless it is already replaced by another daemon
+   *
+   * @param tokenFile
+   */
+  protected void deleteToken(Path tokenFile) {
+    try {
+      if (token.equals(readToken(tokenFile))) {
+        Files.delete(tokenFile);
+      }
+    } catch (IOException e) {
+      // left for the next daemon to replace
+    }
+  }
+
+  /**
+   * @param tokenFile
+   * @return the token or an empty string if there is no token file
+   * @throws IOException if the token file is accessible to other users
+   */
+  protected static String readToken(Path tokenFile) throws IOException {
+    if (!Files.isRegularFile(tokenFile, LinkOption.NOFOLLOW_LINKS)) {
+      return "";
+    }
+
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      PosixFileAttributes attributes = Files.readAttributes(tokenFile, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+      boolean ownedByUser = attributes.owner().getName().equals(System.getProperty("user.name"));
+      boolean privateToUser = true;
+      for (PosixFilePermission permission : attributes.permissions()) {
+        if (permission != PosixFilePermission.OWNER_READ && permission != PosixFilePermission.OWNER_WRITE) {
+          privateToUser = false;
+        }
+      }
+      if (!ownedByUser || !privateToUser) {
+        throw new IOException("The collision check daemon token file is not private to the current user: [" + tokenFile + "]");
+      }
+    }
+
+    return new String(Files.readAllBytes(tokenFile), StandardCharsets.UTF_8).trim();
+  }
+
+  /**
+   * @param requestToken
+   * @return whether the request token is the daemon one, compared in constant time
+   */
+  protected boolean isAuthorized(String requestToken) {
+    return MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), requestToken.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Serves the requests until the STOP request or the idle timeout
+   *
+   * @param idleTimeoutMillis {@code 0} for no timeout
+   * @throws IOException
+   */
+  public void serve(int idleTimeoutMillis) throws IOException {
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      serverSocket.setSoTimeout(idleTimeoutMillis);
+      while (!stopped) {
+        final Socket socket;
+        try {
+          socket = serverSocket.accept();
+        } catch (SocketTimeoutException e) {
+          // idle for too long
+          break;
+        } catch (IOException e) {
+          if (stopped) {
+            break;
+          }
+          throw e;
+        }
+        executor.execute(() -> handle(socket));
+      }
+    } finally {
+      serverSocket.close();
+      executor.shutdown();
+    }
+  }
+
+  protected void handle(Socket socket) {
+    try {
+      try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+           PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+
+        String line = in.readLine();
+        if (line == null) {
+          return;
+        }
+
+        String[] parts = line.split("\t", -1);
+        if (!"STOP".equals(parts[0]) && !"CHECK".equals(parts[0])) {
+          out.println("FAILED\tUnknown request: [" + singleLine(parts[0]) + "]");
+
+        } else if (parts.length < 2 || !isAuthorized(parts[1])) {
+          // neither stopped nor version checked for an unauthorized client
+          out.println("FAILED\tUnauthorized request");
+
+        } else if ("STOP".equals(parts[0])) {
+          stop();
+
+        } else if (parts.length < 3 || !VERSION.equals(parts[2])) {
+          // stop listening before responding, so that the client is able to start a daemon of its own version
+          stop();
+          out.println("VERSION_MISMATCH\t" + VERSION);
+
+        } else {
+          try {
+            CheckRequest request = CheckRequest.parse(line);
+            check(request, new ResponseLog(out));
+            // END is written by check
+          } catch (Throwable e) {
+            out.println("FAILED\t" + singleLine(String.valueOf(e)));
+          }
+        }
+
+        out.flush();
+      } finally {
+        socket.close();
+      }
+    } catch (IOException e) {
+      // the client has gone, nothing to respond to
+    }
+  }
+
+  protected void check(CheckRequest request, ResponseLog log) throws IOException {
+    try (WarImpl war1 = new WarImpl(new File(request.war1Path), libJarIndexCache);
+         WarImpl war2 = new WarImpl(new File(request.war2Path), libJarIndexCache)) {
+
+      SharedServerLib serverLib = null;
+      if (request.serverLibPath != null) {
+        Path indexCacheDir = Paths.get(request.serverLibIndexCacheDir != null ? request.serverLibIndexCacheDir : System.getProperty("java.io.tmpdir"));
+        serverLib = acquireServerLib(Paths.get(request.serverLibPath), indexCacheDir);
+      }
+
+      try {
+        CollisionAnalyzer.CollisionAnalyzeResult result = CollisionAnalyzer.analyzeCollisions(war1, war2, serverLib == null ? null : serverLib.serverLib);
+        boolean hasCollisions = CollisionReporter.report(result, request.war1Name, request.war2Name, request.serverLibPath, request.strictIntraWar, log);
+        if (request.sharedLibReport) {
+          SharedLibAdvisor.report(SharedLibAdvisor.advise(result), request.war1Name, request.war2Name, log);
+        }
+        log.out.println("END\t" + hasCollisions);
+      } finally {
+        if (serverLib != null) {
+          releaseServerLib(serverLib);
+        }
+      }
+    }
+  }
+
+  protected void stop() throws IOException {
+    stopped = true;
+    serverSocket.close();
+  }
+
+  /**
+   * Returns the up-to-date server lib, to be released by {@link #releaseServerLib} after use
+   *
+   * @param dir
+   * @param indexCacheDir
+   * @return
+   * @throws IOException
+   */
+  protected SharedServerLib acquireServerLib(Path dir, Path indexCacheDir) throws IOException {
+    synchronized (serverLibs) {
+      SharedServerLib serverLib = serverLibs.get(dir);
+      if (serverLib == null || !serverLib.serverLib.fingerprint().equals(ServerLibImpl.fingerprint(dir))) {
+        SharedServerLib replaced = serverLib;
+        serverLib = new SharedServerLib(new ServerLibImpl(dir, indexCacheDir));
+        serverLibs.put(dir, serverLib);
+        if (replaced != null) {
+          replaced.replaced = true;
+          // the checks still using the outdated server lib close it on release
+          closeIfUnused(replaced);
+        }
+      }
+      serverLib.users++;
+      return serverLib;
+    }
+  }
+
+  protected void releaseServerLib(SharedServerLib serverLib) throws IOException {
+    synchronized (serverLibs) {
+      serverLib.users--;
+      closeIfUnused(serverLib);
+    }
+  }
+
+  private static void closeIfUnused(SharedServerLib serverLib) throws IOException {
+    if (serverLib.replaced && serverLib.users == 0) {
+      serverLib.serverLib.close();
+    }
+  }
+
+  /**
+   * The check request options
+   */
+  public static class CheckRequest {
+    public String war1Path;
+    /**
+     * The first war name to log
+     */
+    public String war1Name;
+    public String war2Path;
+    /**
+     * The second war name to log
+     */
+    public String war2Name;
+    /**
+     * Option {@code sharedLibReport}: whether to report the shared lib candidates
+     */
+    public boolean sharedLibReport;
+    /**
+     * Option {@code serverLibPath}: the server lib to analyze both wars against, nullable
+     */
+    public String serverLibPath;
+    /**
+     * Option {@code serverLibIndexCacheDir}: the directory to cache the server lib index in, nullable
+     */
+    public String serverLibIndexCacheDir;
+    /**
+     * Option {@code strictIntraWar}: whether the non-identical class collisions within a war count as collisions
+     */
+    public boolean strictIntraWar;
+
+    /**
+     * @param token the daemon token
+     * @return the request line (without the line terminator) of the current {@link #VERSION}
+     */
+    public String format(String token) {
+      StringBuilder sb = new StringBuilder("CHECK\t" + token + "\t" + VERSION
+              + "\t" + war1Path + "\t" + war1Name + "\t" + war2Path + "\t" + war2Name);
+      if (sharedLibReport) {
+        sb.append("\tsharedLibReport=true");
+      }
+      if (serverLibPath != null) {
+        sb.append("\tserverLibPath=").append(serverLibPath);
+      }
+      if (serverLibIndexCacheDir != null) {
+        sb.append("\tserverLibIndexCacheDir=").append(serverLibIndexCacheDir);
+      }
+      if (strictIntraWar) {
+        sb.append("\tstrictIntraWar=true");
+      }
+      return sb.toString();
+    }
+
+    /**
+     * @param line the request line of any version
+     * @return
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    public static CheckRequest parse(String line) {
+      String[] parts = line.split("\t", -1);
+      if (parts.length < 7 || !"CHECK".equals(parts[0])) {
+        throw new IllegalArgumentException("Malformed check request: [" + line + "]");
+      }
+
+      CheckRequest request = new CheckRequest();
+      request.war1Path = parts[3];
+      request.war1Name = parts[4];
+      request.war2Path = parts[5];
+      request.war2Name = parts[6];
+      for (int i = 7; i < parts.length; i++) {
+        int eq = parts[i].indexOf('=');
+        String option = eq == -1 ? parts[i] : parts[i].substring(0, eq);
+        String value = eq == -1 ? "" : parts[i].substring(eq + 1);
+        switch (option) {
+          case "sharedLibReport": request.sharedLibReport = Boolean.parseBoolean(value); break;
+          case "serverLibPath": request.serverLibPath = value.isEmpty() ? null : value; break;
+          case "serverLibIndexCacheDir": request.serverLibIndexCacheDir = value.isEmpty() ? null : value; break;
+          case "strictIntraWar": request.strictIntraWar = Boolean.parseBoolean(value); break;
+          default: throw new IllegalArgumentException("Unknown check request option: [" + parts[i] + "]");
+        }
+      }
+      return request;
+    }
+  }
+
+  /**
+   * Requests the check from the daemon running on the local host and replays the daemon log to the {@code log}
+   *
+   * @param port
+   * @param request
+   * @param log
+   * @return whether class collisions found or {@code null} if no daemon of the current {@link #VERSION} is running on the port
+   * @throws IOException if the daemon failed to perform the check or rejected the request
+   */
+  public static Boolean requestCheck(int port, CheckRequest request, Log log) throws IOException {
+    // a daemon of the previous protocol versions responds VERSION_MISMATCH to any token
+    String token = readToken(tokenFile(port));
+
+    final Socket socket;
+    try {
+      socket = new Socket(InetAddress.getLoopbackAddress(), port);
+    } catch (ConnectException e) {
+      return null;
+    }
+
+    try {
+      socket.setSoTimeout(CLIENT_READ_TIMEOUT_MILLIS);
+
+      try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+           PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+
+        out.println(request.format(token));
+        out.flush();
+
+        return readResponse(in, log);
+      }
+    } finally {
+      socket.close();
+    }
+  }
+
+  /**
+   * Reads the check response, replaying the daemon log to the {@code log} only on success,
+   * so that nothing is logged twice if the caller falls back to in-process analysis
+   *
+   * @param in
+   * @param log
+   * @return whether class collisions found or {@code null} in case of the version mismatch
+   * @throws IOException if the daemon failed to perform the check
+   */
+  public static Boolean readResponse(BufferedReader in, Log log) throws IOException {
+    List<String[]> records = new ArrayList<>();
+
+    String line;
+    while ((line = in.readLine()) != null) {
+      int tab = line.indexOf('\t');
+      String type = tab == -1 ? line : line.substring(0, tab);
+      String message = tab == -1 ? "" : line.substring(tab + 1);
+
+      switch (type) {
+        case "DEBUG":
+        case "INFO":
+        case "WARN":
+        case "ERROR": {
+          records.add(new String[]{type, message});
+          break;
+        }
+        case "END": {
+          for (String[] record : records) {
+            switch (record[0]) {
+              case "DEBUG": log.debug(record[1]); break;
+              case "INFO": log.info(record[1]); break;
+              case "WARN": log.warn(record[1]); break;
+              case "ERROR": log.error(record[1]); break;
+            }
+          }
+          return Boolean.valueOf(message);
+        }
+        case "VERSION_MISMATCH": return null;
+        case "FAILED": throw new IOException("The collision check daemon failed: " + message);
+        default: throw new IOException("Unexpected collision check daemon response: [" + line + "]");
+      }
+    }
+
+    throw new IOException("The collision check daemon closed the connection unexpectedly");
+  }
+
+  /**
+   * Starts the daemon as a detached process of the current java runtime, not waiting for it to begin listening
+   *
+   * @param port
+   * @return the daemon log file
+   * @throws IOException
+   */
+  public static File start(int port) throws IOException {
+    // the plugin jar and the maven-plugin-api jar are sufficient for the daemon
+    String classpath = codeSourcePath(CollisionCheckDaemon.class) + File.pathSeparator + codeSourcePath(Log.class);
+
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+    File logFile = new File(System.getProperty("java.io.tmpdir"), "collisioncheck-daemon-" + port + ".log");
+
+    // the same temp directory, so that the daemon writes the token file where the client reads it from
+    new ProcessBuilder(java, "-Djava.io.tmpdir=" + System.getProperty("java.io.tmpdir"), "-cp", classpath,
+            CollisionCheckDaemon.class.getName(), String.valueOf(port))
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.appendTo(logFile))
+            .start();
+
+    return logFile;
+  }
+
+  private static String codeSourcePath(Class<?> c) throws IOException {
+    try {
+      return Paths.get(c.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+    } catch (URISyntaxException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private static String buildId() {
+    try {
+      File codeSource = new File(codeSourcePath(CollisionCheckDaemon.class));
+      if (codeSource.isFile()) {
+        return codeSource.getName() + ":" + codeSource.length() + ":" + codeSource.lastModified();
+      } else {
+        // running from the classes directory
+        return "dev";
+      }
+    } catch (IOException | RuntimeException e) {
+      return "unknown";
+    }
+  }
+
+  private static String singleLine(String s) {
+    return s.replaceAll("[\r\n\t]+", " ");
+  }
+
+  /**
+   * Writes the log records to the response
+   */
+  protected static class ResponseLog implements Log {
+    protected final PrintWriter out;
+
+    public ResponseLog(PrintWriter out) {
+      this.out = out;
+    }
+
+    protected void write(String type, CharSequence content, Throwable error) {
+      StringBuilder message = new StringBuilder();
+      if (content != null) {
+        message.append(content);
+      }
+      if (error != null) {
+        message.append(message.length() > 0 ? ": " : "").append(error);
+      }
+      out.println(type + "\t" + singleLine(message.toString()));
+    }
+
+    @Override public boolean isDebugEnabled() { return true; }
+    @Override public void debug(CharSequence content) { write("DEBUG", content, null); }
+    @Override public void debug(CharSequence content, Throwable error) { write("DEBUG", content, error); }
+    @Override public void debug(Throwable error) { write("DEBUG", null, error); }
+    @Override public boolean isInfoEnabled() { return true; }
+    @Override public void info(CharSequence content) { write("INFO", content, null); }
+    @Override public void info(CharSequence content, Throwable error) { write("INFO", content, error); }
+    @Override public void info(Throwable error) { write("INFO", null, error); }
+    @Override public boolean isWarnEnabled() { return true; }
+    @Override public void warn(CharSequence content) { write("WARN", content, null); }
+    @Override public void warn(CharSequence content, Throwable error) { write("WARN", content, error); }
+    @Override public void warn(Throwable error) { write("WARN", null, error); }
+    @Override public boolean isErrorEnabled() { return true; }
+    @Override public void error(CharSequence content) { write("ERROR", content, null); }
+    @Override public void error(CharSequence content, Throwable error) { write("ERROR", content, error); }
+    @Override public void error(Throwable error) { write("ERROR", null, error); }
+  }
+}
@@ -25,13 +25,11 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.codehaus.plexus.configuration.xml.XmlPlexusConfiguration;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Goal which checks collisions.
@@ -62,6 +60,22 @@ public class CollisionCheckMojo
   @Parameter( property = "warServiceRestPath")
   private String warServiceRestPath;
 
+  /**
+   * Mojo input parameter.
+   * Application server shared/common lib directory path, e.g. {@code $CATALINA_HOME/lib} (optional).
+   * The classes from the directory are loaded parent-first, so both wars are checked against them.
+   */
+  @Parameter( property = "serverLibPath")
+  private String serverLibPath;
+
+  /**
+   * Mojo input parameter.
+   * The directory to cache the server lib index in, by the server lib fingerprint.
+   * Defaults to the system temporary directory.
+   */
+  @Parameter( property = "serverLibIndexCacheDir")
+  private String serverLibIndexCacheDir;
+
   /**
    * Mojo input parameter.
    * If collisions found, whether to fail execution.
@@ -70,6 +84,48 @@ public class CollisionCheckMojo
   @Parameter( property = "strict")
   private String strict = "true";
 
+  /**
+   * Mojo input parameter.
+   * Whether the non-identical class collisions within a single war (between its WEB-INF/lib jars
+   * or between its WEB-INF/classes and WEB-INF/lib) count as collisions. Otherwise they are logged as warnings only.
+   * values: "1", "0", "true", "false", "TRUE", "FALSE"
+   */
+  @Parameter( property = "strictIntraWar")
+  private String strictIntraWar = "false";
+
+  /**
+   * Mojo input parameter.
+   * Whether to report the jars and the identical class groups which could be moved from the wars into the container shared lib.
+   * values: "1", "0", "true", "false", "TRUE", "FALSE"
+   */
+  @Parameter( property = "sharedLibReport")
+  private String sharedLibReport = "false";
+
+  /**
+   * Mojo input parameter.
+   * Whether to request the check from the collision check daemon running on the local host
+   * (falling back to in-process analysis if no daemon is running).
+   * The daemon accepts the requests of its own user only, see {@link CollisionCheckDaemon} for the remaining risk.
+   * values: "1", "0", "true", "false", "TRUE", "FALSE"
+   */
+  @Parameter( property = "daemon")
+  private String daemon = "false";
+
+  /**
+   * Mojo input parameter.
+   * The loopback port of the collision check daemon.
+   */
+  @Parameter( property = "daemonPort")
+  private int daemonPort = CollisionCheckDaemon.DEFAULT_PORT;
+
+  /**
+   * Mojo input parameter.
+   * In the daemon mode, whether to start the daemon if no daemon is running.
+   * values: "1", "0", "true", "false", "TRUE", "FALSE"
+   */
+  @Parameter( property = "daemonAutoStart")
+  private String daemonAutoStart = "true";
+
   @Override
   public void execute() throws MojoExecutionException, MojoFailureException {
 
@@ -100,116 +156,76 @@ public class CollisionCheckMojo
         throw new MojoFailureException("The \"warServiceRest\" configuration parameter does not represent a valid path: [" + warServiceRestPath + "]");
       }
 
-      final War warGwt;
-      try {
-        warGwt = new WarImpl(warGwtPath0.toFile());
-      } catch (IOException e) {
-        // impossible
-        throw new RuntimeException(e);
-      }
-      final War warServiceRest;
-      try {
-        warServiceRest = new WarImpl(warServiceRestPath0.toFile());
-      } catch (IOException e) {
-        // impossible
-        throw new RuntimeException(e);
+      Path serverLibPath0 = null;
+      if (serverLibPath != null) {
+        try {
+          serverLibPath0 = Paths.get(serverLibPath);
+          if (!Files.isDirectory(serverLibPath0)) {
+            throw new MojoFailureException("The \"serverLibPath\" configuration parameter does not represent a directory: [" + serverLibPath + "]");
+          }
+        } catch (Throwable e) {
+          getLog().error(e);
+          throw new MojoFailureException("The \"serverLibPath\" configuration parameter does not represent a valid path: [" + serverLibPath + "]");
+        }
       }
 
       getLog().info("Collision check began.");
       getLog().info("War files: [" + warGwtPath + "], [" + warServiceRestPath + "]");
+      if (serverLibPath0 != null) {
+        getLog().info("Server lib: [" + serverLibPath + "]");
+      }
 
-      CollisionAnalyzer.CollisionAnalyzeResult result = CollisionAnalyzer.analyzeCollisions(warGwt, warServiceRest);
-
-      // log collisions
-      boolean hasCollisions = false;
-
-      if (result.identicalJarTuples != null && result.identicalJarTuples.size() > 0) {
-        // identical jars is not an error case
-        getLog().warn("Identical jars:");
-        for (CollisionAnalyzer.LibJarTuple identicalJarTuple : result.identicalJarTuples) {
-          getLog().warn("    " + identicalJarTuple.jar1.jarName());
+      Path indexCacheDir = Paths.get(serverLibIndexCacheDir != null ? serverLibIndexCacheDir : System.getProperty("java.io.tmpdir"));
+
+      Boolean hasCollisions = null;
+
+      if (isDaemon()) {
+        // whether a daemon of the current version is listening on the port, though it failed to perform the check
+        boolean daemonFailed = false;
+        try {
+          CollisionCheckDaemon.CheckRequest request = new CollisionCheckDaemon.CheckRequest();
+          request.war1Path = warGwtPath0.toAbsolutePath().toString();
+          request.war1Name = warGwtPath;
+          request.war2Path = warServiceRestPath0.toAbsolutePath().toString();
+          request.war2Name = warServiceRestPath;
+          request.sharedLibReport = isSharedLibReport();
+          request.serverLibPath = serverLibPath0 == null ? null : serverLibPath0.toAbsolutePath().toString();
+          request.serverLibIndexCacheDir = indexCacheDir.toAbsolutePath().toString();
+          request.strictIntraWar = isStrictIntraWar();
+
+          hasCollisions = CollisionCheckDaemon.requestCheck(daemonPort, request, getLog());
+        } catch (IOException e) {
+          getLog().warn("Collision check daemon failed, falling back to in-process analysis: " + e.getMessage());
+          daemonFailed = true;
         }
-      }
 
-      if (result.identicalClassesInJarTuples != null && result.identicalClassesInJarTuples.size() > 0) {
-        // identical classes in jars is not an error case
-        getLog().warn("Identical classes in jars:");
-        for (CollisionAnalyzer.LibJarTuple libJarTuple : result.identicalClassesInJarTuples.keySet()) {
-          Collection<CollisionAnalyzer.ClassCollision> element = result.identicalClassesInJarTuples.get(libJarTuple);
-          getLog().warn("    [" + libJarTuple.jar1.jarName() + "], [" + libJarTuple.jar2.jarName() + "] " +
-                  "having " + element.size() + " class collisions:");
-          // list class collisions in case of non-same artifacts
-          for (CollisionAnalyzer.ClassCollision collision : element) {
-            getLog().warn("        " + collision.class1.classFile.canonicalClassName());
+        if (hasCollisions == null && !daemonFailed && isDaemonAutoStart()) {
+          // no daemon (of the current version) is listening on the port
+          // the current check is performed in-process, the next ones will be served by the daemon
+          try {
+            File daemonLog = CollisionCheckDaemon.start(daemonPort);
+            getLog().info("Collision check daemon started on port " + daemonPort + ", log: [" + daemonLog + "]");
+          } catch (IOException e) {
+            getLog().warn("Failed to start the collision check daemon: " + e.getMessage());
           }
         }
       }
 
-      if (result.collisionsInJarTuples != null && result.collisionsInJarTuples.size() > 0) {
-
-        hasCollisions = true;
-
-
-        // distinguish same artifact jars and non-same artifact jars for better logging
-        Map<CollisionAnalyzer.LibJarTuple, Collection<CollisionAnalyzer.ClassCollision>> sameArtifactJarCollisions = new HashMap<>();
-        Map<CollisionAnalyzer.LibJarTuple, Collection<CollisionAnalyzer.ClassCollision>> nonSameArtifactJarCollisions = new HashMap<>();
+      if (hasCollisions == null) {
+        try (WarImpl warGwt = new WarImpl(warGwtPath0.toFile());
+             WarImpl warServiceRest = new WarImpl(warServiceRestPath0.toFile());
+             ServerLibImpl serverLib = serverLibPath0 == null ? null : new ServerLibImpl(serverLibPath0, indexCacheDir)) {
 
+          CollisionAnalyzer.CollisionAnalyzeResult result = CollisionAnalyzer.analyzeCollisions(warGwt, warServiceRest, serverLib);
 
-        for (CollisionAnalyzer.LibJarTuple libJarTuple : result.collisionsInJarTuples.keySet()) {
-          Collection<CollisionAnalyzer.ClassCollision> element = result.collisionsInJarTuples.get(libJarTuple);
+          hasCollisions = CollisionReporter.report(result, warGwtPath, warServiceRestPath, serverLibPath, isStrictIntraWar(), getLog());
 
-          // test whether the two jars represent the same artifact
-          final boolean sameArtifact;
-          {
-            int classesInJar1 = libJarTuple.jar1.listClasses().size();
-            int classesInJar2 = libJarTuple.jar2.listClasses().size();
-            sameArtifact = (double) element.size() / classesInJar1 > 0.75
-                    && (double) element.size() / classesInJar2 > 0.75;
+          if (isSharedLibReport()) {
+            SharedLibAdvisor.report(SharedLibAdvisor.advise(result), warGwtPath, warServiceRestPath, getLog());
           }
 
-          if (sameArtifact) {
-            sameArtifactJarCollisions.put(libJarTuple, element);
-          } else {
-            nonSameArtifactJarCollisions.put(libJarTuple, element);
-          }
-        }
-
-
-        if (sameArtifactJarCollisions.size() > 0) {
-          getLog().error("Class collisions in jars which seem to represent the same artifact of different versions:");
-          for (CollisionAnalyzer.LibJarTuple libJarTuple : sameArtifactJarCollisions.keySet()) {
-            Collection<CollisionAnalyzer.ClassCollision> element = sameArtifactJarCollisions.get(libJarTuple);
-            getLog().error("    [" + libJarTuple.jar1.jarName() + "], [" + libJarTuple.jar2.jarName() + "] " +
-                    "having " + element.size() + " class collisions");
-            // no need to list class collisions in case of same artifacts
-          }
-        }
-
-        if (nonSameArtifactJarCollisions.size() > 0) {
-          getLog().error("Class collisions in jars:");
-          for (CollisionAnalyzer.LibJarTuple libJarTuple : nonSameArtifactJarCollisions.keySet()) {
-            Collection<CollisionAnalyzer.ClassCollision> element = nonSameArtifactJarCollisions.get(libJarTuple);
-            getLog().error("    [" + libJarTuple.jar1.jarName() + "], [" + libJarTuple.jar2.jarName() + "] " +
-                    "having " + element.size() + " class collisions:");
-            // list class collisions in case of non-same artifacts
-            for (CollisionAnalyzer.ClassCollision collision : element) {
-              getLog().error("        " + collision.class1.classFile.canonicalClassName());
-            }
-          }
-        }
-      }
-
-      if (result.collisionsOther != null && result.collisionsOther.size() > 0) {
-        hasCollisions = true;
-
-        getLog().error("Mixed class collisions:");
-        for (CollisionAnalyzer.ClassCollision collision : result.collisionsOther) {
-          getLog().error("    [" + warGwt
-                  + (collision.class1.location.type == CollisionAnalyzer.Location.Type.WEBINF_CLASSES ? "/WEB-INF/classes" : ("/WEB-INF/lib/" + collision.class1.location.libJar.jarName()))
-                  + "], [" + warServiceRest
-                  + (collision.class2.location.type == CollisionAnalyzer.Location.Type.WEBINF_CLASSES ? "/WEB-INF/classes" : ("/WEB-INF/lib/" + collision.class2.location.libJar.jarName()))
-                  + " having class collision:");
-          getLog().error("        " + collision.class1.classFile.canonicalClassName());
+        } catch (IOException e) {
+          throw new MojoExecutionException("Failed to read the war files or the server lib", e);
         }
       }
 
@@ -227,4 +243,20 @@ public class CollisionCheckMojo
   protected boolean isStrict() {
     return "true".equalsIgnoreCase(strict) || "1".equals(strict);
   }
+
+  protected boolean isStrictIntraWar() {
+    return "true".equalsIgnoreCase(strictIntraWar) || "1".equals(strictIntraWar);
+  }
+
+  protected boolean isSharedLibReport() {
+    return "true".equalsIgnoreCase(sharedLibReport) || "1".equals(sharedLibReport);
+  }
+
+  protected boolean isDaemon() {
+    return "true".equalsIgnoreCase(daemon) || "1".equals(daemon);
+  }
+
+  protected boolean isDaemonAutoStart() {
+    return "true".equalsIgnoreCase(daemonAutoStart) || "1".equals(daemonAutoStart);
+  }
 }
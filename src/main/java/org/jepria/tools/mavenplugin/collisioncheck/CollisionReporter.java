@@ -0,0 +1,279 @@
+package org.jepria.tools.mavenplugin.collisioncheck;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Logs the collision analyze result
+ */
+public class CollisionReporter {
+
+  /**
+   * @param result
+   * @param war1Name the first war name to log
+   * @param war2Name the second war name to log
+   * @param log
+   * @return whether the result contains class collisions
+   */
+  public static boolean report(CollisionAnalyzer.CollisionAnalyzeResult result, String war1Name, String war2Name, Log log) {
+    return report(result, war1Name, war2Name, null, log);
+  }
+
+  /**
+   * @param result
+   * @param war1Name the first war name to log
+   * @param war2Name the second war name to log
+   * @param serverLibName the server lib name to log, nullable if the result contains no server lib collisions
+   * @param log
+   * @return whether the result contains class collisions
+   */
+  public static boolean report(CollisionAnalyzer.CollisionAnalyzeResult result, String war1Name, String war2Name, String serverLibName, Log log) {
+    return report(result, war1Name, war2Name, serverLibName, false, log);
+  }
+
+  /**
+   * @param result
+   * @param war1Name the first war name to log
+   * @param war2Name the second war name to log
+   * @param serverLibName the server lib name to log, nullable if the result contains no server lib collisions
+   * @param strictIntraWar whether the non-identical class collisions within a war are reported as errors
+   * and taken into account in the return value, otherwise they are reported as warnings only
+   * @param log
+   * @return whether the result contains class collisions
+   */
+  public static boolean report(CollisionAnalyzer.CollisionAnalyzeResult result, String war1Name, String war2Name, String serverLibName,
+                               boolean strictIntraWar, Log log) {
+    boolean hasCollisions = reportPair(result, war1Name, war2Name, log);
+
+    if (result.intraWarDuplicates1 != null) {
+      hasCollisions |= reportIntraWar(result.intraWarDuplicates1, war1Name, strictIntraWar, log);
+    }
+
+    if (result.intraWarDuplicates2 != null) {
+      hasCollisions |= reportIntraWar(result.intraWarDuplicates2, war2Name, strictIntraWar, log);
+    }
+
+    if (result.serverLibResult1 != null && hasAny(result.serverLibResult1)) {
+      log.info("Collisions of [" + war1Name + "] against the server lib [" + serverLibName + "] (parent-first):");
+      hasCollisions |= reportPair(result.serverLibResult1, war1Name, serverLibName, log);
+    }
+
+    if (result.serverLibResult2 != null && hasAny(result.serverLibResult2)) {
+      log.info("Collisions of [" + war2Name + "] against the server lib [" + serverLibName + "] (parent-first):");
+      hasCollisions |= reportPair(result.serverLibResult2, war2Name, serverLibName, log);
+    }
+
+    return hasCollisions;
+  }
+
+  /**
+   * @return whether {@link #reportPair} logs anything for the result
+   */
+  private static boolean hasAny(CollisionAnalyzer.CollisionAnalyzeResult result) {
+    return result.identicalJarTuples != null && result.identicalJarTuples.size() > 0
+            || result.identicalClassesInJarTuples != null && result.identicalClassesInJarTuples.size() > 0
+            || result.collisionsInJarTuples != null && result.collisionsInJarTuples.size() > 0
+            || result.collisionsOther != null && result.collisionsOther.size() > 0;
+  }
+
+  private static boolean reportPair(CollisionAnalyzer.CollisionAnalyzeResult result, String name1, String name2, Log log) {
+
+    // log collisions
+    boolean hasCollisions = false;
+
+    if (result.identicalJarTuples != null && result.identicalJarTuples.size() > 0) {
+      // identical jars is not an error case
+      log.warn("Identical jars:");
+      for (CollisionAnalyzer.LibJarTuple identicalJarTuple : result.identicalJarTuples) {
+        log.warn("    " + identicalJarTuple.jar1.jarName());
+      }
+    }
+
+    if (result.identicalClassesInJarTuples != null && result.identicalClassesInJarTuples.size() > 0) {
+      // identical classes in jars is not an error case
+      log.warn("Identical classes in jars:");
+      for (CollisionAnalyzer.LibJarTuple libJarTuple : result.identicalClassesInJarTuples.keySet()) {
+        Collection<CollisionAnalyzer.ClassCollision> element = result.identicalClassesInJarTuples.get(libJarTuple);
+        log.warn("    [" + libJarTuple.jar1.jarName() + "], [" + libJarTuple.jar2.jarName() + "] " +
+                "having " + element.size() + " class collisions:");
+        // list class collisions in case of non-same artifacts
+        for (CollisionAnalyzer.ClassCollision collision : element) {
+          log.warn("        " + collision.class1.classFile.canonicalClassName());
+        }
+      }
+    }
+
+    if (result.collisionsInJarTuples != null && result.collisionsInJarTuples.size() > 0) {
+
+      hasCollisions = true;
+
+
+      // distinguish same artifact jars and non-same artifact jars for better logging
+      Map<CollisionAnalyzer.LibJarTuple, Collection<CollisionAnalyzer.ClassCollision>> sameArtifactJarCollisions = new HashMap<>();
+      Map<CollisionAnalyzer.LibJarTuple, Collection<CollisionAnalyzer.ClassCollision>> nonSameArtifactJarCollisions = new HashMap<>();
+
+
+      for (CollisionAnalyzer.LibJarTuple libJarTuple : result.collisionsInJarTuples.keySet()) {
+        Collection<CollisionAnalyzer.ClassCollision> element = result.collisionsInJarTuples.get(libJarTuple);
+
+        if (isSameArtifact(libJarTuple, element)) {
+          sameArtifactJarCollisions.put(libJarTuple, element);
+        } else {
+          nonSameArtifactJarCollisions.put(libJarTuple, element);
+        }
+      }
+
+
+      if (sameArtifactJarCollisions.size() > 0) {
+        log.error("Class collisions in jars which seem to represent the same artifact of different versions:");
+        for (CollisionAnalyzer.LibJarTuple libJarTuple : sameArtifactJarCollisions.keySet()) {
+          Collection<CollisionAnalyzer.ClassCollision> element = sameArtifactJarCollisions.get(libJarTuple);
+          log.error("    [" + libJarTuple.jar1.jarName() + "], [" + libJarTuple.jar2.jarName() + "] " +
+                  "having " + element.size() + " class collisions");
+          // no need to list class collisions in case of same artifacts
+        }
+      }
+
+      if (nonSameArtifactJarCollisions.size() > 0) {
+        log.error("Class collisions in jars:");
+        for (CollisionAnalyzer.LibJarTuple libJarTuple : nonSameArtifactJarCollisions.keySet()) {
+          Collection<CollisionAnalyzer.ClassCollision> element = nonSameArtifactJarCollisions.get(libJarTuple);
+          log.error("    [" + libJarTuple.jar1.jarName() + "], [" + libJarTuple.jar2.jarName() + "] " +
+                  "having " + element.size() + " class collisions:");
+          // list class collisions in case of non-same artifacts
+          for (CollisionAnalyzer.ClassCollision collision : element) {
+            log.error("        " + collision.class1.classFile.canonicalClassName());
+          }
+        }
+      }
+    }
+
+    if (result.collisionsOther != null && result.collisionsOther.size() > 0) {
+      hasCollisions = true;
+
+      log.error("Mixed class collisions:");
+      for (CollisionAnalyzer.ClassCollision collision : result.collisionsOther) {
+        log.error("    [" + name1 + locationPath(collision.class1.location)
+                + "], [" + name2 + locationPath(collision.class2.location)
+                + " having class collision:");
+        log.error("        " + collision.class1.classFile.canonicalClassName());
+      }
+    }
+
+    return hasCollisions;
+  }
+
+  /**
+   * @return whether the duplicates contain class collisions, always {@code false} unless {@code strict}
+   */
+  private static boolean reportIntraWar(CollisionAnalyzer.IntraWarDuplicates duplicates, String warName, boolean strict, Log log) {
+    boolean hasCollisions = false;
+
+    // the non-identical collisions within a war only fail the check if requested
+    Consumer<CharSequence> collisionLog = strict ? log::error : log::warn;
+
+    if (duplicates.identicalJarTuples != null && duplicates.identicalJarTuples.size() > 0) {
+      // identical jars is not an error case
+      log.warn("Duplicate jars in [" + warName + "/WEB-INF/lib]:");
+      for (CollisionAnalyzer.LibJarTuple identicalJarTuple : duplicates.identicalJarTuples) {
+        log.warn("    [" + identicalJarTuple.jar1.jarName() + "], [" + identicalJarTuple.jar2.jarName() + "]");
+      }
+    }
+
+    if (duplicates.identicalClassesInJarTuples != null && duplicates.identicalClassesInJarTuples.size() > 0) {
+      // identical classes in jars is not an error case
+      log.warn("Identical duplicate classes in [" + warName + "/WEB-INF/lib] jars:");
+      for (CollisionAnalyzer.LibJarTuple libJarTuple : duplicates.identicalClassesInJarTuples.keySet()) {
+        Collection<CollisionAnalyzer.ClassCollision> element = duplicates.identicalClassesInJarTuples.get(libJarTuple);
+        log.warn("    [" + libJarTuple.jar1.jarName() + "], [" + libJarTuple.jar2.jarName() + "] " +
+                "having " + element.size() + " class collisions:");
+        for (CollisionAnalyzer.ClassCollision collision : element) {
+          log.warn("        " + collision.class1.classFile.canonicalClassName());
+        }
+      }
+    }
+
+    if (duplicates.collisionsInJarTuples != null && duplicates.collisionsInJarTuples.size() > 0) {
+      hasCollisions = strict;
+
+      // distinguish same artifact jars and non-same artifact jars for better logging
+      Map<CollisionAnalyzer.LibJarTuple, Collection<CollisionAnalyzer.ClassCollision>> sameArtifactJarCollisions = new HashMap<>();
+      Map<CollisionAnalyzer.LibJarTuple, Collection<CollisionAnalyzer.ClassCollision>> nonSameArtifactJarCollisions = new HashMap<>();
+
+      for (CollisionAnalyzer.LibJarTuple libJarTuple : duplicates.collisionsInJarTuples.keySet()) {
+        Collection<CollisionAnalyzer.ClassCollision> element = duplicates.collisionsInJarTuples.get(libJarTuple);
+        if (isSameArtifact(libJarTuple, element)) {
+          sameArtifactJarCollisions.put(libJarTuple, element);
+        } else {
+          nonSameArtifactJarCollisions.put(libJarTuple, element);
+        }
+      }
+
+      if (sameArtifactJarCollisions.size() > 0) {
+        collisionLog.accept("Jars in [" + warName + "/WEB-INF/lib] which seem to represent the same artifact of different versions (the loaded classes depend on the unspecified jar order):");
+        for (CollisionAnalyzer.LibJarTuple libJarTuple : sameArtifactJarCollisions.keySet()) {
+          Collection<CollisionAnalyzer.ClassCollision> element = sameArtifactJarCollisions.get(libJarTuple);
+          collisionLog.accept("    [" + libJarTuple.jar1.jarName() + "], [" + libJarTuple.jar2.jarName() + "] " +
+                  "having " + element.size() + " class collisions");
+          // no need to list class collisions in case of same artifacts
+        }
+      }
+
+      if (nonSameArtifactJarCollisions.size() > 0) {
+        collisionLog.accept("Class collisions in [" + warName + "/WEB-INF/lib] jars (the loaded classes depend on the unspecified jar order):");
+        for (CollisionAnalyzer.LibJarTuple libJarTuple : nonSameArtifactJarCollisions.keySet()) {
+          Collection<CollisionAnalyzer.ClassCollision> element = nonSameArtifactJarCollisions.get(libJarTuple);
+          collisionLog.accept("    [" + libJarTuple.jar1.jarName() + "], [" + libJarTuple.jar2.jarName() + "] " +
+                  "having " + element.size() + " class collisions:");
+          for (CollisionAnalyzer.ClassCollision collision : element) {
+            collisionLog.accept("        " + collision.class1.classFile.canonicalClassName());
+          }
+        }
+      }
+    }
+
+    if (duplicates.identicalShadowedClasses != null && duplicates.identicalShadowedClasses.size() > 0) {
+      // identical classes is not an error case
+      log.warn("Classes in [" + warName + "/WEB-INF/classes] identical to the classes in WEB-INF/lib jars:");
+      for (CollisionAnalyzer.ClassCollision collision : duplicates.identicalShadowedClasses) {
+        log.warn("    [" + locationPath(collision.class2.location).substring(1) + "] "
+                + collision.class1.classFile.canonicalClassName());
+      }
+    }
+
+    if (duplicates.shadowedClasses != null && duplicates.shadowedClasses.size() > 0) {
+      hasCollisions = strict;
+
+      collisionLog.accept("Classes in [" + warName + "/WEB-INF/classes] shadowing the different classes in WEB-INF/lib jars (WEB-INF/classes take precedence):");
+      for (CollisionAnalyzer.ClassCollision collision : duplicates.shadowedClasses) {
+        collisionLog.accept("    [" + locationPath(collision.class2.location).substring(1) + "] "
+                + collision.class1.classFile.canonicalClassName());
+      }
+    }
+
+    return hasCollisions;
+  }
+
+  /**
+   * @return whether the two jars seem to represent the same artifact, judging by the share of the colliding classes
+   */
+  private static boolean isSameArtifact(CollisionAnalyzer.LibJarTuple libJarTuple, Collection<CollisionAnalyzer.ClassCollision> collisions) {
+    int classesInJar1 = libJarTuple.jar1.listClasses().size();
+    int classesInJar2 = libJarTuple.jar2.listClasses().size();
+    return (double) collisions.size() / classesInJar1 > 0.75
+            && (double) collisions.size() / classesInJar2 > 0.75;
+  }
+
+  private static String locationPath(CollisionAnalyzer.Location location) {
+    switch (location.type) {
+      case WEBINF_CLASSES: return "/WEB-INF/classes";
+      case WEBINF_LIB_JAR: return "/WEB-INF/lib/" + location.libJar.jarName();
+      case SERVER_LIB_JAR: return "/" + location.libJar.jarName();
+      default: throw new IllegalArgumentException(String.valueOf(location.type));
+    }
+  }
+}
@@ -14,4 +14,22 @@ public interface LibJar {
   List<ClassFile> listClasses();
 
   InputStream newInputStream();
+
+  /**
+   * Jar file size in bytes
+   *
+   * @return {@code -1} if unknown
+   */
+  default long size() {
+    return -1;
+  }
+
+  /**
+   * CRC-32 of the jar file content, allows to compare the jars without reading them
+   *
+   * @return {@code -1} if unknown
+   */
+  default long crc() {
+    return -1;
+  }
 }
\ No newline at end of file
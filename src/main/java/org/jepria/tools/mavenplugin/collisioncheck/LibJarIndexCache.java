@@ -0,0 +1,131 @@
+package org.jepria.tools.mavenplugin.collisioncheck;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Resident index of WEB-INF/lib/*.jar class entries, shared between the wars read by the same JVM
+ * (e.g. by the {@link CollisionCheckDaemon}), so that a jar seen once is not re-inflated on the next check.
+ * <br/>
+ * Jars are identified by their digest: the name, the size and the CRC-32 of the jar entry,
+ * all of which are read from the war central directory without inflating the jar.
+ * <br/>
+ * The cache is bounded by the total number of the indexed class entries, the least recently used jars are evicted first.
+ */
+public class LibJarIndexCache {
+
+  public static class Digest {
+    /**
+     * e.g. {@code commons-io-2.5.jar}
+     */
+    public final String jarName;
+    public final long size;
+    public final long crc;
+
+    public Digest(String jarName, long size, long crc) {
+      this.jarName = jarName;
+      this.size = size;
+      this.crc = crc;
+    }
+
+    @Override
+    // for using the type as a map key
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Digest)) return false;
+      Digest that = (Digest) o;
+      return size == that.size &&
+              crc == that.crc &&
+              Objects.equals(jarName, that.jarName);
+    }
+
+    @Override
+    // for using the type as a map key
+    public int hashCode() {
+      return Objects.hash(jarName, size, crc);
+    }
+  }
+
+  public static class ClassEntry {
+    /**
+     * e.g. {@code java/util/List.class}
+     */
+    public final String name;
+    /**
+     * Uncompressed size in bytes, or {@code -1} if unknown
+     */
+    public final long size;
+    /**
+     * CRC-32 of the content, or {@code -1} if unknown
+     */
+    public final long crc;
+
+    public ClassEntry(String name, long size, long crc) {
+      this.name = name;
+      this.size = size;
+      this.crc = crc;
+    }
+  }
+
+  /**
+   * Maximum total number of the class entries held by the cache
+   */
+  protected final int maxClassEntries;
+
+  protected int classEntries = 0;
+
+  /**
+   * Access-ordered, the eldest entry is the least recently used one
+   */
+  protected final LinkedHashMap<Digest, List<ClassEntry>> index = new LinkedHashMap<>(16, 0.75f, true);
+
+  public LibJarIndexCache(int maxClassEntries) {
+    this.maxClassEntries = maxClassEntries;
+  }
+
+  /**
+   * @param digest
+   * @return the jar class entries or {@code null} if the jar is not indexed
+   */
+  public synchronized List<ClassEntry> get(Digest digest) {
+    return index.get(digest);
+  }
+
+  /**
+   * @param digest
+   * @param jarClassEntries the jar class entries
+   */
+  public synchronized void put(Digest digest, List<ClassEntry> jarClassEntries) {
+    if (jarClassEntries.size() > maxClassEntries) {
+      // the jar alone does not fit the cache
+      return;
+    }
+    List<ClassEntry> value = Collections.unmodifiableList(new ArrayList<>(jarClassEntries));
+    List<ClassEntry> replaced = index.put(digest, value);
+    if (replaced != null) {
+      classEntries -= replaced.size();
+    }
+    classEntries += value.size();
+
+    // evict the least recently used jars
+    Iterator<Map.Entry<Digest, List<ClassEntry>>> it = index.entrySet().iterator();
+    while (classEntries > maxClassEntries && it.hasNext()) {
+      Map.Entry<Digest, List<ClassEntry>> eldest = it.next();
+      classEntries -= eldest.getValue().size();
+      it.remove();
+    }
+  }
+
+  public synchronized int jarCount() {
+    return index.size();
+  }
+
+  public synchronized int classEntryCount() {
+    return classEntries;
+  }
+}
@@ -0,0 +1,16 @@
+package org.jepria.tools.mavenplugin.collisioncheck;
+
+import java.util.List;
+
+/**
+ * Application server shared/common lib directory, e.g. {@code $CATALINA_HOME/lib}.
+ * The classes are loaded parent-first with respect to the webapp classes.
+ */
+public interface ServerLib {
+  /**
+   * Jars from the directory
+   *
+   * @return
+   */
+  List<LibJar> listLibJars();
+}
@@ -0,0 +1,372 @@
+package org.jepria.tools.mavenplugin.collisioncheck;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The server lib directory, indexed once per its content.
+ * <br/>
+ * The directory is identified by the fingerprint of its jar names, sizes and modification times,
+ * which is computed without opening the jars. The index is stored in the index cache directory under the fingerprint,
+ * so that the unchanged directory is not rescanned on the next build. The indexes of the previous directory contents
+ * are deleted once the new one is written.
+ * <br/>
+ * The jars are opened on the first class read, once per jar, and stay open until {@link #close()}.
+ */
+public class ServerLibImpl implements ServerLib, Closeable {
+
+  protected final Path dir;
+
+  protected final String fingerprint;
+
+  protected final List<ServerLibJar> libJars;
+
+  protected static class JarIndex {
+    /**
+     * Jar file size in bytes
+     */
+    public long size;
+    /**
+     * CRC-32 of the jar file content
+     */
+    public long crc;
+    public List<LibJarIndexCache.ClassEntry> classEntries = new ArrayList<>();
+  }
+
+  /**
+   * @param dir the server lib directory
+   * @param indexCacheDir the directory to read the index from and to write the index to, nullable
+   * @throws IOException
+   */
+  public ServerLibImpl(Path dir, Path indexCacheDir) throws IOException {
+    this.dir = dir;
+
+    List<Path> jarFiles = listJarFiles(dir);
+    fingerprint = fingerprint(dir, jarFiles);
+
+    String indexFilePrefix = "collisioncheck-serverlib-" + dirHash(dir) + "-";
+    Path indexFile = indexCacheDir == null ? null : indexCacheDir.resolve(indexFilePrefix + fingerprint + ".idx");
+
+    Map<String, JarIndex> index = null;
+    if (indexFile != null && Files.isRegularFile(indexFile)) {
+      try {
+        index = readIndex(indexFile);
+      } catch (IOException | RuntimeException e) {
+        // corrupted index, rescan
+        index = null;
+      }
+    }
+
+    if (index == null) {
+      index = scan(jarFiles);
+      if (indexFile != null) {
+        writeIndex(index, indexFile);
+        deleteSupersededIndexes(indexFile, indexFilePrefix);
+      }
+    }
+
+    libJars = new ArrayList<>();
+    for (Map.Entry<String, JarIndex> entry : index.entrySet()) {
+      libJars.add(new ServerLibJar(dir.resolve(entry.getKey()), entry.getValue()));
+    }
+  }
+
+  @Override
+  public List<LibJar> listLibJars() {
+    return Collections.unmodifiableList(libJars);
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOException failure = null;
+    for (ServerLibJar libJar : libJars) {
+      try {
+        libJar.close();
+      } catch (IOException e) {
+        failure = e;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  public Path dir() {
+    return dir;
+  }
+
+  public String fingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * @param dir the server lib directory
+   * @return the fingerprint of the directory content
+   * @throws IOException
+   */
+  public static String fingerprint(Path dir) throws IOException {
+    return fingerprint(dir, listJarFiles(dir));
+  }
+
+  protected static List<Path> listJarFiles(Path dir) throws IOException {
+    List<Path> jarFiles = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.jar")) {
+      for (Path jarFile : stream) {
+        if (Files.isRegularFile(jarFile)) {
+          jarFiles.add(jarFile);
+        }
+      }
+    }
+    // for the stable fingerprint
+    Collections.sort(jarFiles);
+    return jarFiles;
+  }
+
+  protected static String fingerprint(Path dir, List<Path> jarFiles) throws IOException {
+    MessageDigest digest = sha256();
+    digest.update(dir.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+    for (Path jarFile : jarFiles) {
+      String jarFileDescriptor = "\n" + jarFile.getFileName() + "\t" + Files.size(jarFile) + "\t" + Files.getLastModifiedTime(jarFile).toMillis();
+      digest.update(jarFileDescriptor.getBytes(StandardCharsets.UTF_8));
+    }
+    return hex(digest.digest());
+  }
+
+  /**
+   * @param dir the server lib directory
+   * @return the hash of the directory path only, common to the indexes of all the directory contents
+   */
+  protected static String dirHash(Path dir) {
+    MessageDigest digest = sha256();
+    digest.update(dir.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+    return hex(digest.digest()).substring(0, 16);
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // impossible
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder();
+    for (byte b : bytes) {
+      sb.append(String.format("%02x", b));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @param jarFiles
+   * @return jar name to the jar index
+   * @throws IOException
+   */
+  protected static Map<String, JarIndex> scan(List<Path> jarFiles) throws IOException {
+    Map<String, JarIndex> index = new LinkedHashMap<>();
+    for (Path jarFile : jarFiles) {
+      JarIndex jarIndex = new JarIndex();
+      jarIndex.size = Files.size(jarFile);
+      jarIndex.crc = crc(jarFile);
+      // the jars are plain files, so the central directory is read without inflating the entries
+      try (ZipFile jarZip = new ZipFile(jarFile.toFile())) {
+        Enumeration<? extends ZipEntry> jarEntries = jarZip.entries();
+        while (jarEntries.hasMoreElements()) {
+          ZipEntry jarEntry = jarEntries.nextElement();
+          if (ClassEntries.isClass(jarEntry.getName())) {
+            jarIndex.classEntries.add(new LibJarIndexCache.ClassEntry(jarEntry.getName(), jarEntry.getSize(), jarEntry.getCrc()));
+          }
+        }
+      }
+      index.put(jarFile.getFileName().toString(), jarIndex);
+    }
+    return index;
+  }
+
+  protected static long crc(Path file) throws IOException {
+    CRC32 crc = new CRC32();
+    byte[] buf = new byte[64 * 1024];
+    try (InputStream in = Files.newInputStream(file)) {
+      int len;
+      while ((len = in.read(buf)) > 0) {
+        crc.update(buf, 0, len);
+      }
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Index file format, UTF-8, tab-separated:
+   * <pre>
+   * J &lt;jar name&gt; &lt;jar size&gt; &lt;jar CRC-32&gt;
+   * C &lt;class entry name&gt; &lt;class entry size&gt; &lt;class entry CRC-32&gt;  (the classes of the preceding jar)
+   * </pre>
+   */
+  protected static Map<String, JarIndex> readIndex(Path indexFile) throws IOException {
+    Map<String, JarIndex> index = new LinkedHashMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+      JarIndex jarIndex = null;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] parts = line.split("\t");
+        if ("J".equals(parts[0]) && parts.length == 4) {
+          jarIndex = new JarIndex();
+          jarIndex.size = Long.parseLong(parts[2]);
+          jarIndex.crc = Long.parseLong(parts[3]);
+          index.put(parts[1], jarIndex);
+        } else if ("C".equals(parts[0]) && parts.length == 4 && jarIndex != null) {
+          jarIndex.classEntries.add(new LibJarIndexCache.ClassEntry(parts[1], Long.parseLong(parts[2]), Long.parseLong(parts[3])));
+        } else {
+          throw new IOException("Malformed server lib index line: [" + line + "]");
+        }
+      }
+    }
+    return index;
+  }
+
+  protected static void writeIndex(Map<String, JarIndex> index, Path indexFile) throws IOException {
+    Files.createDirectories(indexFile.getParent());
+    // write to a temporary file first so that the concurrent builds never read a partial index
+    Path tmpFile = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+    try {
+      try (BufferedWriter writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+        for (Map.Entry<String, JarIndex> entry : index.entrySet()) {
+          JarIndex jarIndex = entry.getValue();
+          writer.write("J\t" + entry.getKey() + "\t" + jarIndex.size + "\t" + jarIndex.crc + "\n");
+          for (LibJarIndexCache.ClassEntry classEntry : jarIndex.classEntries) {
+            writer.write("C\t" + classEntry.name + "\t" + classEntry.size + "\t" + classEntry.crc + "\n");
+          }
+        }
+      }
+      Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmpFile);
+    }
+  }
+
+  /**
+   * Deletes the indexes of the same directory other than the {@code indexFile}
+   */
+  protected static void deleteSupersededIndexes(Path indexFile, String indexFilePrefix) {
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(indexFile.getParent(), indexFilePrefix + "*.idx")) {
+      for (Path supersededIndexFile : stream) {
+        if (!supersededIndexFile.getFileName().equals(indexFile.getFileName())) {
+          try {
+            Files.deleteIfExists(supersededIndexFile);
+          } catch (IOException e) {
+            // still in use or already deleted by a concurrent build, retry next time
+          }
+        }
+      }
+    } catch (IOException e) {
+      // the indexes are a cache, never fail the check because of them
+    }
+  }
+
+  protected static class ServerLibJar implements LibJar, Closeable {
+    protected final Path jarFile;
+    protected final JarIndex jarIndex;
+    protected final List<ClassFile> jarClassFiles;
+
+    /**
+     * Opened lazily, nullable
+     */
+    protected ZipFile jarZip;
+
+    protected boolean closed = false;
+
+    public ServerLibJar(Path jarFile, JarIndex jarIndex) {
+      this.jarFile = jarFile;
+      this.jarIndex = jarIndex;
+
+      jarClassFiles = new ArrayList<>();
+      for (LibJarIndexCache.ClassEntry jarClassEntry : jarIndex.classEntries) {
+        String canonicalClassName = ClassEntries.canonicalClassName(jarClassEntry.name);
+        if (canonicalClassName != null) {
+          jarClassFiles.add(ClassEntries.newClassFile(canonicalClassName, jarClassEntry.size, jarClassEntry.crc, () -> {
+            ZipFile jarZip = jarZip();
+            ZipEntry jarEntry = jarZip.getEntry(jarClassEntry.name);
+            if (jarEntry == null) {
+              throw new NoSuchElementException("No ZipEntry named [" + jarClassEntry.name + "] found in [" + jarFile + "]");
+            }
+            return jarZip.getInputStream(jarEntry);
+          }));
+        }
+      }
+    }
+
+    protected synchronized ZipFile jarZip() throws IOException {
+      if (closed) {
+        // never reopen, nobody would close it again
+        throw new IOException("The server lib jar is closed: [" + jarFile + "]");
+      }
+      if (jarZip == null) {
+        jarZip = new ZipFile(jarFile.toFile());
+      }
+      return jarZip;
+    }
+
+    @Override
+    public String jarName() {
+      return jarFile.getFileName().toString();
+    }
+
+    @Override
+    public List<ClassFile> listClasses() {
+      return jarClassFiles;
+    }
+
+    @Override
+    public InputStream newInputStream() {
+      try {
+        return Files.newInputStream(jarFile);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @Override
+    public long size() {
+      return jarIndex.size;
+    }
+
+    @Override
+    public long crc() {
+      return jarIndex.crc;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      closed = true;
+      if (jarZip != null) {
+        try {
+          jarZip.close();
+        } finally {
+          jarZip = null;
+        }
+      }
+    }
+  }
+}
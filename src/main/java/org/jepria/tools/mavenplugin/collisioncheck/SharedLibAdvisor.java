@@ -0,0 +1,279 @@
+package org.jepria.tools.mavenplugin.collisioncheck;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Advises the jars and the identical class groups which could be moved from the wars into the container shared lib,
+ * so that they are loaded once by the container classloader instead of once per webapp classloader.
+ * The jars already present in the server lib are advised to be removed from the wars instead.
+ */
+public class SharedLibAdvisor {
+
+  public static class Candidate {
+    /**
+     * The jars (one per war) holding the classes to move
+     */
+    public CollisionAnalyzer.LibJarTuple libJarTuple;
+
+    /**
+     * The classes to move (of the first war)
+     */
+    public Collection<ClassFile> classes;
+
+    /**
+     * Class file bytes loaded once instead of once per war after the move
+     */
+    public long classBytesSaved;
+
+    /**
+     * Canonical classnames having non-identical collisions, either of the candidate classes themselves,
+     * or (for an identical class group) of the other classes in the same jars.
+     * If non-empty, the move is unsafe because the class loading result would depend on the classloader precedence.
+     */
+    public Set<String> unsafeClassNames;
+
+    public boolean isSafe() {
+      return unsafeClassNames.isEmpty();
+    }
+  }
+
+  public static class SharedLibAdvice {
+    /**
+     * Jars of the first war identical to the server lib jars, to remove from the war
+     * ({@link Candidate#libJarTuple} holds the war jar and the server lib jar)
+     */
+    public List<Candidate> serverLibJars1;
+
+    /**
+     * Jars of the second war identical to the server lib jars, to remove from the war
+     * ({@link Candidate#libJarTuple} holds the war jar and the server lib jar)
+     */
+    public List<Candidate> serverLibJars2;
+
+    /**
+     * Identical jars to move entirely
+     */
+    public List<Candidate> jars;
+
+    /**
+     * Identical classes in non-identical jars, to move after extracting them into a separate jar
+     */
+    public List<Candidate> classGroups;
+  }
+
+  public static SharedLibAdvice advise(CollisionAnalyzer.CollisionAnalyzeResult result) {
+
+    // collect classnames having non-identical collisions, including the ones against the server lib and within the wars
+    Set<String> collidingClassNames = new HashSet<>();
+    addCollidingClassNames(result, collidingClassNames);
+    if (result.intraWarDuplicates1 != null) {
+      addCollidingClassNames(result.intraWarDuplicates1, collidingClassNames);
+    }
+    if (result.intraWarDuplicates2 != null) {
+      addCollidingClassNames(result.intraWarDuplicates2, collidingClassNames);
+    }
+    if (result.serverLibResult1 != null) {
+      addCollidingClassNames(result.serverLibResult1, collidingClassNames);
+    }
+    if (result.serverLibResult2 != null) {
+      addCollidingClassNames(result.serverLibResult2, collidingClassNames);
+    }
+
+    // the war jars already present in the server lib are to be removed rather than moved
+    List<Candidate> serverLibJars1 = newServerLibJarCandidates(result.serverLibResult1, collidingClassNames);
+    List<Candidate> serverLibJars2 = newServerLibJarCandidates(result.serverLibResult2, collidingClassNames);
+    Set<LibJar> serverLibWarJars = new HashSet<>();
+    for (Candidate candidate : serverLibJars1) {
+      serverLibWarJars.add(candidate.libJarTuple.jar1);
+    }
+    for (Candidate candidate : serverLibJars2) {
+      serverLibWarJars.add(candidate.libJarTuple.jar1);
+    }
+
+    List<Candidate> jars = new ArrayList<>();
+    if (result.identicalJarTuples != null) {
+      for (CollisionAnalyzer.LibJarTuple libJarTuple : result.identicalJarTuples) {
+        if (serverLibWarJars.contains(libJarTuple.jar1) || serverLibWarJars.contains(libJarTuple.jar2)) {
+          continue;
+        }
+        jars.add(newCandidate(libJarTuple, libJarTuple.jar1.listClasses(), collidingClassNames));
+      }
+    }
+
+    List<Candidate> classGroups = new ArrayList<>();
+    if (result.identicalClassesInJarTuples != null) {
+      for (Map.Entry<CollisionAnalyzer.LibJarTuple, Collection<CollisionAnalyzer.ClassCollision>> entry : result.identicalClassesInJarTuples.entrySet()) {
+        if (serverLibWarJars.contains(entry.getKey().jar1) || serverLibWarJars.contains(entry.getKey().jar2)) {
+          continue;
+        }
+        List<ClassFile> classes = new ArrayList<>();
+        for (CollisionAnalyzer.ClassCollision collision : entry.getValue()) {
+          classes.add(collision.class1.classFile);
+        }
+        Candidate candidate = newCandidate(entry.getKey(), classes, collidingClassNames);
+        // the moved classes would not see the non-identical classes remaining in the jars
+        Collection<CollisionAnalyzer.ClassCollision> collisionsInSameJars = result.collisionsInJarTuples == null ? null
+                : result.collisionsInJarTuples.get(entry.getKey());
+        if (collisionsInSameJars != null) {
+          for (CollisionAnalyzer.ClassCollision collision : collisionsInSameJars) {
+            candidate.unsafeClassNames.add(collision.class1.classFile.canonicalClassName());
+          }
+        }
+        classGroups.add(candidate);
+      }
+    }
+
+    // the most profitable first
+    Comparator<Candidate> byClassBytesSavedDesc = Comparator.comparingLong((Candidate c) -> c.classBytesSaved).reversed();
+    serverLibJars1.sort(byClassBytesSavedDesc);
+    serverLibJars2.sort(byClassBytesSavedDesc);
+    jars.sort(byClassBytesSavedDesc);
+    classGroups.sort(byClassBytesSavedDesc);
+
+    SharedLibAdvice advice = new SharedLibAdvice();
+    advice.serverLibJars1 = serverLibJars1;
+    advice.serverLibJars2 = serverLibJars2;
+    advice.jars = jars;
+    advice.classGroups = classGroups;
+    return advice;
+  }
+
+  private static void addCollidingClassNames(CollisionAnalyzer.CollisionAnalyzeResult result, Set<String> collidingClassNames) {
+    if (result.collisionsInJarTuples != null) {
+      for (Collection<CollisionAnalyzer.ClassCollision> element : result.collisionsInJarTuples.values()) {
+        for (CollisionAnalyzer.ClassCollision collision : element) {
+          collidingClassNames.add(collision.class1.classFile.canonicalClassName());
+        }
+      }
+    }
+    if (result.collisionsOther != null) {
+      for (CollisionAnalyzer.ClassCollision collision : result.collisionsOther) {
+        collidingClassNames.add(collision.class1.classFile.canonicalClassName());
+      }
+    }
+  }
+
+  private static void addCollidingClassNames(CollisionAnalyzer.IntraWarDuplicates duplicates, Set<String> collidingClassNames) {
+    if (duplicates.collisionsInJarTuples != null) {
+      for (Collection<CollisionAnalyzer.ClassCollision> element : duplicates.collisionsInJarTuples.values()) {
+        for (CollisionAnalyzer.ClassCollision collision : element) {
+          collidingClassNames.add(collision.class1.classFile.canonicalClassName());
+        }
+      }
+    }
+    if (duplicates.shadowedClasses != null) {
+      for (CollisionAnalyzer.ClassCollision collision : duplicates.shadowedClasses) {
+        collidingClassNames.add(collision.class1.classFile.canonicalClassName());
+      }
+    }
+  }
+
+  private static List<Candidate> newServerLibJarCandidates(CollisionAnalyzer.CollisionAnalyzeResult serverLibResult, Set<String> collidingClassNames) {
+    List<Candidate> candidates = new ArrayList<>();
+    if (serverLibResult != null && serverLibResult.identicalJarTuples != null) {
+      for (CollisionAnalyzer.LibJarTuple libJarTuple : serverLibResult.identicalJarTuples) {
+        candidates.add(newCandidate(libJarTuple, libJarTuple.jar1.listClasses(), collidingClassNames));
+      }
+    }
+    return candidates;
+  }
+
+  private static Candidate newCandidate(CollisionAnalyzer.LibJarTuple libJarTuple, Collection<ClassFile> classes, Set<String> collidingClassNames) {
+    Candidate candidate = new Candidate();
+    candidate.libJarTuple = libJarTuple;
+    candidate.classes = classes;
+    candidate.classBytesSaved = 0;
+    candidate.unsafeClassNames = new TreeSet<>();
+    for (ClassFile classFile : classes) {
+      if (classFile.size() > 0) {
+        candidate.classBytesSaved += classFile.size();
+      }
+      if (collidingClassNames.contains(classFile.canonicalClassName())) {
+        candidate.unsafeClassNames.add(classFile.canonicalClassName());
+      }
+    }
+    return candidate;
+  }
+
+  /**
+   * @param advice
+   * @param war1Name the first war name to log
+   * @param war2Name the second war name to log
+   * @param log
+   */
+  public static void report(SharedLibAdvice advice, String war1Name, String war2Name, Log log) {
+    if (advice.serverLibJars1.isEmpty() && advice.serverLibJars2.isEmpty()
+            && advice.jars.isEmpty() && advice.classGroups.isEmpty()) {
+      log.info("No shared lib candidates found.");
+      return;
+    }
+
+    long totalClassesSaved = 0;
+    long totalClassBytesSaved = 0;
+
+    for (int i = 0; i < 2; i++) {
+      List<Candidate> serverLibJars = i == 0 ? advice.serverLibJars1 : advice.serverLibJars2;
+      String warName = i == 0 ? war1Name : war2Name;
+      if (!serverLibJars.isEmpty()) {
+        log.info("Jars in [" + warName + "/WEB-INF/lib] identical to the server lib jars (to be removed from the war):");
+        for (Candidate candidate : serverLibJars) {
+          log.info("    " + candidate.libJarTuple.jar1.jarName() + ": " + describe(candidate));
+          logUnsafe(candidate, log);
+          if (candidate.isSafe()) {
+            totalClassesSaved += candidate.classes.size();
+            totalClassBytesSaved += candidate.classBytesSaved;
+          }
+        }
+      }
+    }
+
+    if (!advice.jars.isEmpty()) {
+      log.info("Shared lib candidates (identical jars):");
+      for (Candidate candidate : advice.jars) {
+        log.info("    " + candidate.libJarTuple.jar1.jarName() + ": " + describe(candidate));
+        logUnsafe(candidate, log);
+        if (candidate.isSafe()) {
+          totalClassesSaved += candidate.classes.size();
+          totalClassBytesSaved += candidate.classBytesSaved;
+        }
+      }
+    }
+
+    if (!advice.classGroups.isEmpty()) {
+      log.info("Shared lib candidates (identical classes in jars, to be extracted into a separate jar):");
+      for (Candidate candidate : advice.classGroups) {
+        log.info("    [" + candidate.libJarTuple.jar1.jarName() + "], [" + candidate.libJarTuple.jar2.jarName() + "]: " + describe(candidate));
+        logUnsafe(candidate, log);
+        if (candidate.isSafe()) {
+          totalClassesSaved += candidate.classes.size();
+          totalClassBytesSaved += candidate.classBytesSaved;
+        }
+      }
+    }
+
+    log.info("Shared lib candidates total (safe only): " + totalClassesSaved + " classes, " + totalClassBytesSaved + " class bytes saved");
+  }
+
+  private static String describe(Candidate candidate) {
+    return candidate.classes.size() + " classes, " + candidate.classBytesSaved + " class bytes saved"
+            + (candidate.isSafe() ? "" : ", UNSAFE");
+  }
+
+  private static void logUnsafe(Candidate candidate, Log log) {
+    if (!candidate.isSafe()) {
+      log.info("        unsafe because of " + candidate.unsafeClassNames.size() + " non-identical class collisions:");
+      for (String className : candidate.unsafeClassNames) {
+        log.info("            " + className);
+      }
+    }
+  }
+}
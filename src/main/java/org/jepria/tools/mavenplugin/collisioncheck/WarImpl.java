@@ -1,5 +1,6 @@
 package org.jepria.tools.mavenplugin.collisioncheck;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -13,18 +14,27 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
-public class WarImpl implements War {
+public class WarImpl implements War, Closeable {
 
   protected final ZipFile warFileZip;
 
-  protected static final Pattern webInfClassesClassPattern = Pattern.compile("WEB-INF/classes/(.+/)?(.+)\\.class");
+  protected static final String webInfClassesPrefix = "WEB-INF/classes/";
   protected static final Pattern webInfLibJarPattern = Pattern.compile("WEB-INF/lib/(.+\\.jar)");
-  protected static final Pattern jarClassPattern = Pattern.compile("(.+/)?(.+)\\.class");
 
   protected final List<ClassFile> classFiles;
   protected final List<LibJar> libJars;
 
   public WarImpl(File warFile) throws IOException {
+    this(warFile, null);
+  }
+
+  /**
+   * @param warFile
+   * @param libJarIndexCache the resident index to read the WEB-INF/lib/*.jar class entries from instead of inflating the jars,
+   * and to put the inflated jar indexes to, nullable
+   * @throws IOException
+   */
+  public WarImpl(File warFile, LibJarIndexCache libJarIndexCache) throws IOException {
     warFileZip = new ZipFile(warFile);
 
     Enumeration<? extends ZipEntry> warEntries = warFileZip.entries();
@@ -36,30 +46,12 @@ public class WarImpl implements War {
       ZipEntry warEntry = warEntries.nextElement();
       String warEntryName = warEntry.getName();
 
-      Matcher webInfClassesClassMatcher = webInfClassesClassPattern.matcher(warEntryName);
-      if (webInfClassesClassMatcher.matches()) {
-
-        String path = webInfClassesClassMatcher.group(1);
-        String name = webInfClassesClassMatcher.group(2);
-        String canonicalClassName = (path == null ? "" : path.replaceAll("/", ".")) + name;
-
-        ClassFile classFile = new ClassFile() {
-          @Override
-          public String canonicalClassName() {
-            return canonicalClassName;
-          }
-
-          @Override
-          public InputStream newInputStream() {
-            try {
-              return warFileZip.getInputStream(warEntry);
-            } catch (IOException e) {
-              throw new RuntimeException(e);
-            }
-          }
-        };
+      String webInfClassesClassName = warEntryName.startsWith(webInfClassesPrefix)
+              ? ClassEntries.canonicalClassName(warEntryName.substring(webInfClassesPrefix.length())) : null;
+      if (webInfClassesClassName != null) {
 
-        classFiles.add(classFile);
+        classFiles.add(ClassEntries.newClassFile(webInfClassesClassName, warEntry.getSize(), warEntry.getCrc(),
+                () -> warFileZip.getInputStream(warEntry)));
 
       } else {
         Matcher webInfLibJarMatcher = webInfLibJarPattern.matcher(warEntryName);
@@ -67,47 +59,57 @@ public class WarImpl implements War {
 
           String jarName = webInfLibJarMatcher.group(1);
 
-          InputStream jarInput = warFileZip.getInputStream(warEntry);
-          ZipInputStream jarInputZip = new ZipInputStream(jarInput);
+          // the digest is only known if the central directory provides both the size and the CRC
+          final LibJarIndexCache.Digest digest;
+          if (warEntry.getSize() != -1 && warEntry.getCrc() != -1) {
+            digest = new LibJarIndexCache.Digest(jarName, warEntry.getSize(), warEntry.getCrc());
+          } else {
+            digest = null;
+          }
 
-          List<ClassFile> jarClassFiles = new ArrayList<>();
+          List<LibJarIndexCache.ClassEntry> jarClassEntries = digest != null && libJarIndexCache != null ? libJarIndexCache.get(digest) : null;
+          if (jarClassEntries == null) {
+            List<ZipEntry> jarClassZipEntries = new ArrayList<>();
 
-          ZipEntry jarEntry;
-          while ((jarEntry = jarInputZip.getNextEntry()) != null) {
-            String jarEntryName = jarEntry.getName();
+            try (ZipInputStream jarInputZip = new ZipInputStream(warFileZip.getInputStream(warEntry))) {
+              ZipEntry jarEntry;
+              while ((jarEntry = jarInputZip.getNextEntry()) != null) {
+                if (ClassEntries.isClass(jarEntry.getName())) {
+                  jarClassZipEntries.add(jarEntry);
+                }
+              }
+            }
 
-            Matcher jarClassMatcher = jarClassPattern.matcher(jarEntryName);
-            if (jarClassMatcher.matches()) {
+            // the entry sizes and CRCs are only known after the entries have been read (in case of the data descriptors)
+            jarClassEntries = new ArrayList<>();
+            for (ZipEntry jarClassZipEntry : jarClassZipEntries) {
+              jarClassEntries.add(new LibJarIndexCache.ClassEntry(jarClassZipEntry.getName(), jarClassZipEntry.getSize(), jarClassZipEntry.getCrc()));
+            }
 
-              String path = jarClassMatcher.group(1);
-              String name = jarClassMatcher.group(2);
-              String canonicalClassName = (path == null ? "" : path.replaceAll("/", ".")) + name;
+            if (digest != null && libJarIndexCache != null) {
+              libJarIndexCache.put(digest, jarClassEntries);
+            }
+          }
 
-              ClassFile classFile = new ClassFile() {
-                @Override
-                public String canonicalClassName() {
-                  return canonicalClassName;
-                }
+          List<ClassFile> jarClassFiles = new ArrayList<>();
 
-                @Override
-                public InputStream newInputStream() {
-                  try {
-                    InputStream jarInput = warFileZip.getInputStream(warEntry);
-                    ZipInputStream jarInputZip = new ZipInputStream(jarInput);
-                    InputStream in = getInputStreamForZipInputStreamEntry(jarInputZip, jarEntryName);
-                    if (in != null) {
-                      return in;
-                    } else {
-                      // no such entry found
-                      throw new NoSuchElementException("No ZipEntry named [" + jarEntryName + "] found in the ZipInputStream");
-                    }
-                  } catch (IOException e) {
-                    throw new RuntimeException(e);
-                  }
+          for (LibJarIndexCache.ClassEntry jarClassEntry : jarClassEntries) {
+            String jarEntryName = jarClassEntry.name;
+
+            String canonicalClassName = ClassEntries.canonicalClassName(jarEntryName);
+            if (canonicalClassName != null) {
+
+              jarClassFiles.add(ClassEntries.newClassFile(canonicalClassName, jarClassEntry.size, jarClassEntry.crc, () -> {
+                InputStream jarInput = warFileZip.getInputStream(warEntry);
+                ZipInputStream jarInputZip = new ZipInputStream(jarInput);
+                InputStream in = getInputStreamForZipInputStreamEntry(jarInputZip, jarEntryName);
+                if (in != null) {
+                  return in;
+                } else {
+                  // no such entry found
+                  throw new NoSuchElementException("No ZipEntry named [" + jarEntryName + "] found in the ZipInputStream");
                 }
-              };
-
-              jarClassFiles.add(classFile);
+              }));
             }
           }
 
@@ -130,6 +132,16 @@ public class WarImpl implements War {
                 throw new RuntimeException(e);
               }
             }
+
+            @Override
+            public long size() {
+              return warEntry.getSize();
+            }
+
+            @Override
+            public long crc() {
+              return warEntry.getCrc();
+            }
           };
 
           libJars.add(libJar);
@@ -148,6 +160,11 @@ public class WarImpl implements War {
     return classFiles;
   }
 
+  @Override
+  public void close() throws IOException {
+    warFileZip.close();
+  }
+
   private static InputStream getInputStreamForZipInputStreamEntry(ZipInputStream stream, String entryName) throws IOException {
     ZipEntry entry;
     while ((entry = stream.getNextEntry()) != null) {
@@ -0,0 +1,30 @@
+package org.jepria.tools.mavenplugin.collisioncheck;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ClassEntriesTest {
+
+  @Test
+  public void canonicalClassName() {
+    assertEquals("java.util.List", ClassEntries.canonicalClassName("java/util/List.class"));
+    assertEquals("Main", ClassEntries.canonicalClassName("Main.class"));
+    assertEquals("a.B$C", ClassEntries.canonicalClassName("a/B$C.class"));
+  }
+
+  @Test
+  public void notClasses() {
+    assertNull(ClassEntries.canonicalClassName("META-INF/MANIFEST.MF"));
+    assertNull(ClassEntries.canonicalClassName("a/b/"));
+  }
+
+  @Test
+  public void excludedClasses() {
+    assertNull(ClassEntries.canonicalClassName("module-info.class"));
+    assertNull(ClassEntries.canonicalClassName("a/b/package-info.class"));
+    assertNull(ClassEntries.canonicalClassName("META-INF/versions/9/module-info.class"));
+    assertNull(ClassEntries.canonicalClassName("META-INF/versions/11/a/B.class"));
+  }
+}
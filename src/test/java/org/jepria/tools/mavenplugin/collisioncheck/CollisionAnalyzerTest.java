@@ -0,0 +1,127 @@
+package org.jepria.tools.mavenplugin.collisioncheck;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CollisionAnalyzerTest {
+
+  private Path tmpDir;
+
+  @Before
+  public void setUp() throws IOException {
+    tmpDir = Files.createTempDirectory("collisioncheck-test");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    TestZips.deleteRecursively(tmpDir);
+  }
+
+  @Test
+  public void identicalJarsOfDifferentNamesWithinWar() throws IOException {
+    byte[] jar = TestZips.zip("a/A.class", "A", "a/B.class", "B");
+    CollisionAnalyzer.IntraWarDuplicates duplicates = analyze(
+            "WEB-INF/lib/a-1.0.jar", jar,
+            "WEB-INF/lib/a-1.0-copy.jar", jar).intraWarDuplicates1;
+
+    assertEquals(1, duplicates.identicalJarTuples.size());
+    CollisionAnalyzer.LibJarTuple libJarTuple = duplicates.identicalJarTuples.iterator().next();
+    assertEquals(new HashSet<>(Arrays.asList("a-1.0.jar", "a-1.0-copy.jar")),
+            new HashSet<>(Arrays.asList(libJarTuple.jar1.jarName(), libJarTuple.jar2.jarName())));
+    assertTrue(duplicates.identicalClassesInJarTuples.isEmpty());
+    assertTrue(duplicates.collisionsInJarTuples.isEmpty());
+  }
+
+  @Test
+  public void jarVersionsWithinWar() throws IOException {
+    CollisionAnalyzer.IntraWarDuplicates duplicates = analyze(
+            "WEB-INF/lib/a-1.0.jar", TestZips.zip("a/Same.class", "S", "a/Diff.class", "D1"),
+            "WEB-INF/lib/a-2.0.jar", TestZips.zip("a/Same.class", "S", "a/Diff.class", "D2")).intraWarDuplicates1;
+
+    assertTrue(duplicates.identicalJarTuples.isEmpty());
+    assertEquals(Arrays.asList("a.Same"), classNames(duplicates.identicalClassesInJarTuples));
+    assertEquals(Arrays.asList("a.Diff"), classNames(duplicates.collisionsInJarTuples));
+    // the same jar tuple
+    assertEquals(duplicates.identicalClassesInJarTuples.keySet(), duplicates.collisionsInJarTuples.keySet());
+  }
+
+  @Test
+  public void webInfClassesAlwaysFirst() throws IOException {
+    // the jars precede the classes in the war
+    CollisionAnalyzer.IntraWarDuplicates duplicates = analyze(
+            "WEB-INF/lib/a.jar", TestZips.zip("a/Same.class", "S", "a/Diff.class", "D1"),
+            "WEB-INF/classes/a/Same.class", "S",
+            "WEB-INF/classes/a/Diff.class", "D2").intraWarDuplicates1;
+
+    assertEquals(1, duplicates.identicalShadowedClasses.size());
+    CollisionAnalyzer.ClassCollision identical = duplicates.identicalShadowedClasses.iterator().next();
+    assertEquals("a.Same", identical.class1.classFile.canonicalClassName());
+    assertEquals(CollisionAnalyzer.Location.Type.WEBINF_CLASSES, identical.class1.location.type);
+    assertEquals(CollisionAnalyzer.Location.Type.WEBINF_LIB_JAR, identical.class2.location.type);
+
+    assertEquals(1, duplicates.shadowedClasses.size());
+    CollisionAnalyzer.ClassCollision shadowed = duplicates.shadowedClasses.iterator().next();
+    assertEquals("a.Diff", shadowed.class1.classFile.canonicalClassName());
+    assertEquals(CollisionAnalyzer.Location.Type.WEBINF_CLASSES, shadowed.class1.location.type);
+    assertEquals(CollisionAnalyzer.Location.Type.WEBINF_LIB_JAR, shadowed.class2.location.type);
+  }
+
+  @Test
+  public void intraWarCollisionsFailOnlyIfStrict() throws IOException {
+    CollisionAnalyzer.CollisionAnalyzeResult result = analyze(
+            "WEB-INF/lib/a-1.0.jar", TestZips.zip("a/Diff.class", "D1"),
+            "WEB-INF/lib/a-2.0.jar", TestZips.zip("a/Diff.class", "D2"),
+            "WEB-INF/classes/b/Shadowing.class", "S1",
+            "WEB-INF/lib/b.jar", TestZips.zip("b/Shadowing.class", "S2"));
+    assertFalse(result.intraWarDuplicates1.collisionsInJarTuples.isEmpty());
+    assertFalse(result.intraWarDuplicates1.shadowedClasses.isEmpty());
+
+    RecordingLog log = new RecordingLog();
+    assertFalse(CollisionReporter.report(result, "1.war", "2.war", null, false, log));
+    for (String record : log.records) {
+      assertFalse(record, record.startsWith("ERROR"));
+    }
+
+    assertTrue(CollisionReporter.report(result, "1.war", "2.war", null, true, new RecordingLog()));
+  }
+
+  /**
+   * @param war1NamesAndContents the first war entries, see {@link TestZips#zip}
+   * @return the result of analyzing the war against an unrelated second war
+   */
+  private CollisionAnalyzer.CollisionAnalyzeResult analyze(Object... war1NamesAndContents) throws IOException {
+    Path war1File = TestZips.writeZip(tmpDir.resolve("1.war"), war1NamesAndContents);
+    Path war2File = TestZips.writeZip(tmpDir.resolve("2.war"), "WEB-INF/lib/other.jar", TestZips.zip("o/O.class", "O"));
+    try (WarImpl war1 = new WarImpl(war1File.toFile());
+         WarImpl war2 = new WarImpl(war2File.toFile())) {
+      CollisionAnalyzer.CollisionAnalyzeResult result = CollisionAnalyzer.analyzeCollisions(war1, war2);
+      assertTrue(result.intraWarDuplicates2.identicalJarTuples.isEmpty());
+      return result;
+    }
+  }
+
+  private static List<String> classNames(Map<CollisionAnalyzer.LibJarTuple, Collection<CollisionAnalyzer.ClassCollision>> collisionsInJarTuples) {
+    List<String> classNames = new ArrayList<>();
+    for (Collection<CollisionAnalyzer.ClassCollision> collisions : collisionsInJarTuples.values()) {
+      for (CollisionAnalyzer.ClassCollision collision : collisions) {
+        classNames.add(collision.class1.classFile.canonicalClassName());
+      }
+    }
+    return classNames;
+  }
+}
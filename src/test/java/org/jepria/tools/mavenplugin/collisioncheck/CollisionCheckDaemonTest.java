@@ -0,0 +1,255 @@
+package org.jepria.tools.mavenplugin.collisioncheck;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CollisionCheckDaemonTest {
+
+  @Test
+  public void checkRequestRoundTrip() {
+    CollisionCheckDaemon.CheckRequest request = new CollisionCheckDaemon.CheckRequest();
+    request.war1Path = "/a/gwt.war";
+    request.war1Name = "gwt.war";
+    request.war2Path = "/a/rest.war";
+    request.war2Name = "rest.war";
+    request.sharedLibReport = true;
+    request.serverLibPath = "/srv/lib";
+    request.serverLibIndexCacheDir = "/tmp/idx";
+    request.strictIntraWar = true;
+
+    String line = request.format("t0ken");
+    assertTrue(line.startsWith("CHECK\tt0ken\t" + CollisionCheckDaemon.VERSION + "\t"));
+
+    CollisionCheckDaemon.CheckRequest parsed = CollisionCheckDaemon.CheckRequest.parse(line);
+    assertEquals("/a/gwt.war", parsed.war1Path);
+    assertEquals("gwt.war", parsed.war1Name);
+    assertEquals("/a/rest.war", parsed.war2Path);
+    assertEquals("rest.war", parsed.war2Name);
+    assertTrue(parsed.sharedLibReport);
+    assertEquals("/srv/lib", parsed.serverLibPath);
+    assertEquals("/tmp/idx", parsed.serverLibIndexCacheDir);
+    assertTrue(parsed.strictIntraWar);
+  }
+
+  @Test
+  public void checkRequestWithoutOptions() {
+    CollisionCheckDaemon.CheckRequest parsed = CollisionCheckDaemon.CheckRequest.parse("CHECK\tt\tv\t/a/1.war\t1.war\t/a/2.war\t2.war");
+    assertEquals("/a/1.war", parsed.war1Path);
+    assertEquals("2.war", parsed.war2Name);
+    assertFalse(parsed.sharedLibReport);
+    assertNull(parsed.serverLibPath);
+    assertNull(parsed.serverLibIndexCacheDir);
+    assertFalse(parsed.strictIntraWar);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void checkRequestMissingFields() {
+    CollisionCheckDaemon.CheckRequest.parse("CHECK\tt\tv\t/a/1.war\t1.war\t/a/2.war");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void checkRequestUnknownOption() {
+    CollisionCheckDaemon.CheckRequest.parse("CHECK\tt\tv\t/a/1.war\t1.war\t/a/2.war\t2.war\tunknown=1");
+  }
+
+  @Test
+  public void responseReplayedOnEnd() throws IOException {
+    StringWriter response = new StringWriter();
+    PrintWriter out = new PrintWriter(response);
+    CollisionCheckDaemon.ResponseLog responseLog = new CollisionCheckDaemon.ResponseLog(out);
+    responseLog.info("Collisions:");
+    responseLog.error("multi\nline");
+    responseLog.debug("d");
+    responseLog.warn("w");
+    out.println("END\ttrue");
+    out.flush();
+
+    RecordingLog log = new RecordingLog();
+    Boolean hasCollisions = CollisionCheckDaemon.readResponse(new BufferedReader(new StringReader(response.toString())), log);
+
+    assertEquals(Boolean.TRUE, hasCollisions);
+    assertEquals(Arrays.asList("INFO Collisions:", "ERROR multi line", "DEBUG d", "WARN w"), log.records);
+  }
+
+  @Test
+  public void responseNotReplayedOnFailure() throws IOException {
+    RecordingLog log = new RecordingLog();
+    try {
+      CollisionCheckDaemon.readResponse(new BufferedReader(new StringReader("INFO\tCollisions:\nFAILED\tjava.io.FileNotFoundException: 1.war\n")), log);
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("java.io.FileNotFoundException: 1.war"));
+    }
+    assertEquals(Collections.emptyList(), log.records);
+  }
+
+  @Test
+  public void responseNotReplayedOnPrematureClose() {
+    RecordingLog log = new RecordingLog();
+    try {
+      CollisionCheckDaemon.readResponse(new BufferedReader(new StringReader("INFO\tCollisions:\n")), log);
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+    assertEquals(Collections.emptyList(), log.records);
+  }
+
+  @Test
+  public void responseVersionMismatch() throws IOException {
+    RecordingLog log = new RecordingLog();
+    assertNull(CollisionCheckDaemon.readResponse(new BufferedReader(new StringReader("VERSION_MISMATCH\t0:other\n")), log));
+    assertEquals(Collections.emptyList(), log.records);
+  }
+
+  @Test(expected = IOException.class)
+  public void responseUnexpectedLine() throws IOException {
+    CollisionCheckDaemon.readResponse(new BufferedReader(new StringReader("GARBAGE\n")), new RecordingLog());
+  }
+
+  @Test
+  public void requestsWithoutTokenRejected() throws Exception {
+    CollisionCheckDaemon daemon = new CollisionCheckDaemon(0, 1000);
+    int port = daemon.serverSocket.getLocalPort();
+    Path tokenFile = CollisionCheckDaemon.tokenFile(port);
+    Thread serving = new Thread(() -> {
+      try {
+        daemon.serve(0);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    serving.start();
+    try {
+      CollisionCheckDaemon.CheckRequest request = new CollisionCheckDaemon.CheckRequest();
+      request.war1Path = "/nonexistent/1.war";
+      request.war1Name = "1.war";
+      request.war2Path = "/nonexistent/2.war";
+      request.war2Name = "2.war";
+
+      // no token file
+      assertRejected(port, request);
+
+      daemon.writeToken(tokenFile);
+      assertEquals(daemon.token, CollisionCheckDaemon.readToken(tokenFile));
+      if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(tokenFile));
+      }
+
+      // authorized, failed to read the wars
+      try {
+        CollisionCheckDaemon.requestCheck(port, request, new RecordingLog());
+        fail();
+      } catch (IOException e) {
+        assertTrue(e.getMessage(), e.getMessage().contains("1.war"));
+      }
+
+      // neither stopped by a wrong token
+      assertEquals("FAILED\tUnauthorized request", send(port, "STOP\tx" + daemon.token));
+      assertEquals("FAILED\tUnauthorized request", send(port, "STOP"));
+      assertFalse(daemon.stopped);
+
+      if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+        Files.setPosixFilePermissions(tokenFile, PosixFilePermissions.fromString("rw-r--r--"));
+        try {
+          CollisionCheckDaemon.requestCheck(port, request, new RecordingLog());
+          fail();
+        } catch (IOException e) {
+          assertTrue(e.getMessage(), e.getMessage().contains("not private"));
+        }
+      }
+
+      send(port, "STOP\t" + daemon.token);
+      serving.join(10_000);
+      assertFalse(serving.isAlive());
+
+    } finally {
+      daemon.stop();
+      Files.deleteIfExists(tokenFile);
+    }
+  }
+
+  private static void assertRejected(int port, CollisionCheckDaemon.CheckRequest request) {
+    try {
+      CollisionCheckDaemon.requestCheck(port, request, new RecordingLog());
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("Unauthorized request"));
+    }
+  }
+
+  private static String send(int port, String request) throws IOException {
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+         BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+         PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+      out.println(request);
+      out.flush();
+      return in.readLine();
+    }
+  }
+
+  @Test
+  public void replacedServerLibClosedByLastUser() throws IOException {
+    Path tmpDir = Files.createTempDirectory("collisioncheck-test");
+    CollisionCheckDaemon daemon = new CollisionCheckDaemon(0, 1000);
+    try {
+      Path serverLibDir = Files.createDirectory(tmpDir.resolve("lib"));
+      Path jarFile = TestZips.writeZip(serverLibDir.resolve("a.jar"), "a/A.class", "A");
+      Files.setLastModifiedTime(jarFile, FileTime.fromMillis(1_000_000_000_000L));
+
+      CollisionCheckDaemon.SharedServerLib serverLib1 = daemon.acquireServerLib(serverLibDir, null);
+      assertSame(serverLib1, daemon.acquireServerLib(serverLibDir, null));
+      daemon.releaseServerLib(serverLib1);
+
+      Files.setLastModifiedTime(jarFile, FileTime.fromMillis(2_000_000_000_000L));
+      CollisionCheckDaemon.SharedServerLib serverLib2 = daemon.acquireServerLib(serverLibDir, null);
+      assertNotSame(serverLib1, serverLib2);
+
+      // still in use by the first check
+      ClassFile classFile1 = serverLib1.serverLib.listLibJars().get(0).listClasses().get(0);
+      classFile1.newInputStream().close();
+
+      daemon.releaseServerLib(serverLib1);
+      try {
+        classFile1.newInputStream().close();
+        fail();
+      } catch (RuntimeException e) {
+        // closed, never reopened
+      }
+
+      // the up-to-date server lib stays open after release
+      daemon.releaseServerLib(serverLib2);
+      serverLib2.serverLib.listLibJars().get(0).listClasses().get(0).newInputStream().close();
+      serverLib2.serverLib.close();
+
+    } finally {
+      daemon.stop();
+      TestZips.deleteRecursively(tmpDir);
+    }
+  }
+}
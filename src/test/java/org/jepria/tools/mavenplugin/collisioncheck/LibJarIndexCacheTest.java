@@ -0,0 +1,97 @@
+package org.jepria.tools.mavenplugin.collisioncheck;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class LibJarIndexCacheTest {
+
+  @Test
+  public void evictsLeastRecentlyUsedJarsByClassEntryCount() {
+    LibJarIndexCache cache = new LibJarIndexCache(5);
+    LibJarIndexCache.Digest a = new LibJarIndexCache.Digest("a.jar", 1, 1);
+    LibJarIndexCache.Digest b = new LibJarIndexCache.Digest("b.jar", 2, 2);
+    LibJarIndexCache.Digest c = new LibJarIndexCache.Digest("c.jar", 3, 3);
+
+    cache.put(a, classEntries(2));
+    cache.put(b, classEntries(2));
+    // a becomes the most recently used one
+    assertNotNull(cache.get(a));
+
+    cache.put(c, classEntries(2));
+
+    assertNull(cache.get(b));
+    assertNotNull(cache.get(a));
+    assertNotNull(cache.get(c));
+    assertEquals(2, cache.jarCount());
+    assertEquals(4, cache.classEntryCount());
+  }
+
+  @Test
+  public void evictsAsManyJarsAsNeeded() {
+    LibJarIndexCache cache = new LibJarIndexCache(5);
+    LibJarIndexCache.Digest a = new LibJarIndexCache.Digest("a.jar", 1, 1);
+    LibJarIndexCache.Digest b = new LibJarIndexCache.Digest("b.jar", 2, 2);
+    LibJarIndexCache.Digest c = new LibJarIndexCache.Digest("c.jar", 3, 3);
+
+    cache.put(a, classEntries(2));
+    cache.put(b, classEntries(2));
+    cache.put(c, classEntries(5));
+
+    assertNull(cache.get(a));
+    assertNull(cache.get(b));
+    assertNotNull(cache.get(c));
+    assertEquals(1, cache.jarCount());
+    assertEquals(5, cache.classEntryCount());
+  }
+
+  @Test
+  public void skipsJarLargerThanCache() {
+    LibJarIndexCache cache = new LibJarIndexCache(5);
+    LibJarIndexCache.Digest a = new LibJarIndexCache.Digest("a.jar", 1, 1);
+    LibJarIndexCache.Digest b = new LibJarIndexCache.Digest("b.jar", 2, 2);
+
+    cache.put(a, classEntries(2));
+    cache.put(b, classEntries(6));
+
+    assertNull(cache.get(b));
+    assertNotNull(cache.get(a));
+    assertEquals(2, cache.classEntryCount());
+  }
+
+  @Test
+  public void replacesJarOfSameDigest() {
+    LibJarIndexCache cache = new LibJarIndexCache(5);
+    LibJarIndexCache.Digest a = new LibJarIndexCache.Digest("a.jar", 1, 1);
+
+    cache.put(a, classEntries(2));
+    cache.put(new LibJarIndexCache.Digest("a.jar", 1, 1), classEntries(3));
+
+    assertEquals(3, cache.get(a).size());
+    assertEquals(1, cache.jarCount());
+    assertEquals(3, cache.classEntryCount());
+  }
+
+  @Test
+  public void distinguishesDigestsOfSameJarName() {
+    LibJarIndexCache cache = new LibJarIndexCache(5);
+
+    cache.put(new LibJarIndexCache.Digest("a.jar", 1, 1), classEntries(2));
+
+    assertNull(cache.get(new LibJarIndexCache.Digest("a.jar", 1, 2)));
+    assertNull(cache.get(new LibJarIndexCache.Digest("a.jar", 2, 1)));
+  }
+
+  private static List<LibJarIndexCache.ClassEntry> classEntries(int count) {
+    List<LibJarIndexCache.ClassEntry> classEntries = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      classEntries.add(new LibJarIndexCache.ClassEntry("x/C" + i + ".class", i, i));
+    }
+    return classEntries;
+  }
+}
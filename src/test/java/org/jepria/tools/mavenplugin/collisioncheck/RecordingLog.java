@@ -0,0 +1,33 @@
+package org.jepria.tools.mavenplugin.collisioncheck;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the messages instead of logging them
+ */
+class RecordingLog extends SystemStreamLog {
+  final List<String> records = new ArrayList<>();
+
+  @Override
+  public void debug(CharSequence content) {
+    records.add("DEBUG " + content);
+  }
+
+  @Override
+  public void info(CharSequence content) {
+    records.add("INFO " + content);
+  }
+
+  @Override
+  public void warn(CharSequence content) {
+    records.add("WARN " + content);
+  }
+
+  @Override
+  public void error(CharSequence content) {
+    records.add("ERROR " + content);
+  }
+}
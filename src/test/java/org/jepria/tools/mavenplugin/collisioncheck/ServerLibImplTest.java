@@ -0,0 +1,168 @@
+package org.jepria.tools.mavenplugin.collisioncheck;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ServerLibImplTest {
+
+  private Path tmpDir;
+  private Path serverLibDir;
+  private Path indexCacheDir;
+
+  @Before
+  public void setUp() throws IOException {
+    tmpDir = Files.createTempDirectory("collisioncheck-test");
+    serverLibDir = Files.createDirectory(tmpDir.resolve("lib"));
+    indexCacheDir = tmpDir.resolve("idx");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    TestZips.deleteRecursively(tmpDir);
+  }
+
+  @Test
+  public void indexRoundTrip() throws IOException {
+    TestZips.writeZip(serverLibDir.resolve("a.jar"), "a/A.class", "A", "a/b/B.class", "BB", "META-INF/MANIFEST.MF", "");
+    TestZips.writeZip(serverLibDir.resolve("c.jar"), "C.class", "CCC");
+
+    Map<String, ServerLibImpl.JarIndex> index = ServerLibImpl.scan(ServerLibImpl.listJarFiles(serverLibDir));
+    Path indexFile = indexCacheDir.resolve("test.idx");
+    ServerLibImpl.writeIndex(index, indexFile);
+    Map<String, ServerLibImpl.JarIndex> readIndex = ServerLibImpl.readIndex(indexFile);
+
+    assertEquals(Arrays.asList("a.jar", "c.jar"), new ArrayList<>(readIndex.keySet()));
+    for (String jarName : index.keySet()) {
+      ServerLibImpl.JarIndex expected = index.get(jarName);
+      ServerLibImpl.JarIndex actual = readIndex.get(jarName);
+      assertEquals(expected.size, actual.size);
+      assertEquals(expected.crc, actual.crc);
+      assertEquals(describe(expected.classEntries), describe(actual.classEntries));
+    }
+    assertEquals(Arrays.asList("a/A.class 1", "a/b/B.class 2"), describe(readIndex.get("a.jar").classEntries));
+  }
+
+  @Test
+  public void serverLibReadFromIndex() throws IOException {
+    TestZips.writeZip(serverLibDir.resolve("a.jar"), "a/A.class", "A");
+
+    try (ServerLibImpl serverLib = new ServerLibImpl(serverLibDir, indexCacheDir)) {
+      assertEquals(Arrays.asList("a.A"), classNames(serverLib));
+      assertEquals("A", read(serverLib.listLibJars().get(0).listClasses().get(0)));
+    }
+
+    // the index takes precedence over the unchanged directory
+    Path indexFile = single(indexCacheDir);
+    Files.write(indexFile, "C\tx/X.class\t1\t2\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    try (ServerLibImpl serverLib = new ServerLibImpl(serverLibDir, indexCacheDir)) {
+      assertEquals(Arrays.asList("a.A", "x.X"), classNames(serverLib));
+    }
+  }
+
+  @Test
+  public void corruptedIndexRescanned() throws IOException {
+    TestZips.writeZip(serverLibDir.resolve("a.jar"), "a/A.class", "A");
+
+    new ServerLibImpl(serverLibDir, indexCacheDir).close();
+    Path indexFile = single(indexCacheDir);
+    Files.write(indexFile, "garbage\n".getBytes(StandardCharsets.UTF_8));
+
+    try (ServerLibImpl serverLib = new ServerLibImpl(serverLibDir, indexCacheDir)) {
+      assertEquals(Arrays.asList("a.A"), classNames(serverLib));
+    }
+  }
+
+  @Test
+  public void fingerprintInvalidation() throws IOException {
+    Path jarFile = serverLibDir.resolve("a.jar");
+    TestZips.writeZip(jarFile, "a/A.class", "A");
+    Files.setLastModifiedTime(jarFile, FileTime.fromMillis(1_000_000_000_000L));
+
+    String fingerprint;
+    try (ServerLibImpl serverLib = new ServerLibImpl(serverLibDir, indexCacheDir)) {
+      fingerprint = serverLib.fingerprint();
+      assertEquals(fingerprint, ServerLibImpl.fingerprint(serverLibDir));
+    }
+    Path indexFile = single(indexCacheDir);
+
+    TestZips.writeZip(jarFile, "a/A.class", "A", "a/B.class", "B");
+    Files.setLastModifiedTime(jarFile, FileTime.fromMillis(2_000_000_000_000L));
+    assertNotEquals(fingerprint, ServerLibImpl.fingerprint(serverLibDir));
+
+    try (ServerLibImpl serverLib = new ServerLibImpl(serverLibDir, indexCacheDir)) {
+      assertNotEquals(fingerprint, serverLib.fingerprint());
+      assertEquals(Arrays.asList("a.A", "a.B"), classNames(serverLib));
+    }
+
+    // the superseded index is deleted
+    assertNotEquals(indexFile, single(indexCacheDir));
+  }
+
+  @Test
+  public void fingerprintChangedByNewJar() throws IOException {
+    TestZips.writeZip(serverLibDir.resolve("a.jar"), "a/A.class", "A");
+    String fingerprint = ServerLibImpl.fingerprint(serverLibDir);
+
+    TestZips.writeZip(serverLibDir.resolve("b.jar"), "b/B.class", "B");
+    assertNotEquals(fingerprint, ServerLibImpl.fingerprint(serverLibDir));
+  }
+
+  private static List<String> describe(List<LibJarIndexCache.ClassEntry> classEntries) {
+    List<String> descriptions = new ArrayList<>();
+    for (LibJarIndexCache.ClassEntry classEntry : classEntries) {
+      descriptions.add(classEntry.name + " " + classEntry.size);
+    }
+    return descriptions;
+  }
+
+  private static List<String> classNames(ServerLib serverLib) {
+    List<String> classNames = new ArrayList<>();
+    for (LibJar libJar : serverLib.listLibJars()) {
+      for (ClassFile classFile : libJar.listClasses()) {
+        classNames.add(classFile.canonicalClassName());
+      }
+    }
+    return classNames;
+  }
+
+  private static String read(ClassFile classFile) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = classFile.newInputStream()) {
+      byte[] buf = new byte[1024];
+      int len;
+      while ((len = in.read(buf)) > 0) {
+        out.write(buf, 0, len);
+      }
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static Path single(Path dir) throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      for (Path file : stream) {
+        files.add(file);
+      }
+    }
+    assertEquals(1, files.size());
+    return files.get(0);
+  }
+}
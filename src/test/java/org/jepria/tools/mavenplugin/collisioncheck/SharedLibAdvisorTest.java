@@ -0,0 +1,127 @@
+package org.jepria.tools.mavenplugin.collisioncheck;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SharedLibAdvisorTest {
+
+  private Path tmpDir;
+
+  @Before
+  public void setUp() throws IOException {
+    tmpDir = Files.createTempDirectory("collisioncheck-test");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    TestZips.deleteRecursively(tmpDir);
+  }
+
+  @Test
+  public void identicalJarIsSafeCandidate() throws IOException {
+    byte[] commonJar = TestZips.zip("c/A.class", "AAAA", "c/B.class", "BB", "META-INF/MANIFEST.MF", "M");
+    Path war1 = TestZips.writeZip(tmpDir.resolve("1.war"), "WEB-INF/lib/common.jar", commonJar);
+    Path war2 = TestZips.writeZip(tmpDir.resolve("2.war"), "WEB-INF/lib/common.jar", commonJar);
+
+    SharedLibAdvisor.SharedLibAdvice advice = advise(war1, war2, null);
+
+    assertEquals(1, advice.jars.size());
+    SharedLibAdvisor.Candidate candidate = advice.jars.get(0);
+    assertEquals("common.jar", candidate.libJarTuple.jar1.jarName());
+    assertEquals(2, candidate.classes.size());
+    assertEquals(6, candidate.classBytesSaved);
+    assertTrue(candidate.isSafe());
+    assertEquals(Collections.emptyList(), advice.classGroups);
+  }
+
+  @Test
+  public void classGroupUnsafeIfOtherClassInSameJarsDiffers() throws IOException {
+    Path war1 = TestZips.writeZip(tmpDir.resolve("1.war"),
+            "WEB-INF/lib/x-1.0.jar", TestZips.zip("x/Same.class", "SSS", "x/Diff.class", "D1"));
+    Path war2 = TestZips.writeZip(tmpDir.resolve("2.war"),
+            "WEB-INF/lib/x-2.0.jar", TestZips.zip("x/Same.class", "SSS", "x/Diff.class", "D2"));
+
+    SharedLibAdvisor.SharedLibAdvice advice = advise(war1, war2, null);
+
+    assertEquals(Collections.emptyList(), advice.jars);
+    assertEquals(1, advice.classGroups.size());
+    SharedLibAdvisor.Candidate candidate = advice.classGroups.get(0);
+    assertEquals(1, candidate.classes.size());
+    assertEquals("x.Same", candidate.classes.iterator().next().canonicalClassName());
+    assertEquals(3, candidate.classBytesSaved);
+    assertFalse(candidate.isSafe());
+    assertEquals(Collections.singleton("x.Diff"), candidate.unsafeClassNames);
+  }
+
+  @Test
+  public void serverLibJarsAdvisedForRemovalOnly() throws IOException {
+    byte[] commonJar = TestZips.zip("c/A.class", "AAAA");
+    Path war1 = TestZips.writeZip(tmpDir.resolve("1.war"), "WEB-INF/lib/common.jar", commonJar);
+    Path war2 = TestZips.writeZip(tmpDir.resolve("2.war"), "WEB-INF/lib/common.jar", commonJar);
+    Path serverLibDir = Files.createDirectory(tmpDir.resolve("lib"));
+    Files.write(serverLibDir.resolve("common.jar"), commonJar);
+
+    SharedLibAdvisor.SharedLibAdvice advice = advise(war1, war2, serverLibDir);
+
+    assertEquals(1, advice.serverLibJars1.size());
+    assertEquals("common.jar", advice.serverLibJars1.get(0).libJarTuple.jar1.jarName());
+    assertEquals(1, advice.serverLibJars2.size());
+    assertEquals("common.jar", advice.serverLibJars2.get(0).libJarTuple.jar1.jarName());
+    assertEquals(Collections.emptyList(), advice.jars);
+    assertEquals(Collections.emptyList(), advice.classGroups);
+  }
+
+  @Test
+  public void totalCountsSafeCandidatesOnly() throws IOException {
+    byte[] commonJar = TestZips.zip("c/A.class", "AAAA", "c/B.class", "BB");
+    Path war1 = TestZips.writeZip(tmpDir.resolve("1.war"),
+            "WEB-INF/lib/common.jar", commonJar,
+            "WEB-INF/lib/x-1.0.jar", TestZips.zip("x/Same.class", "SSS", "x/Diff.class", "D1"),
+            "WEB-INF/lib/y-1.0.jar", TestZips.zip("y/Y.class", "YYYYY"));
+    Path war2 = TestZips.writeZip(tmpDir.resolve("2.war"),
+            "WEB-INF/lib/common.jar", commonJar,
+            "WEB-INF/lib/x-2.0.jar", TestZips.zip("x/Same.class", "SSS", "x/Diff.class", "D2"),
+            "WEB-INF/lib/y-2.0.jar", TestZips.zip("y/Y.class", "YYYYY", "y/Z.class", "Z"));
+
+    SharedLibAdvisor.SharedLibAdvice advice = advise(war1, war2, null);
+    RecordingLog log = new RecordingLog();
+    SharedLibAdvisor.report(advice, "1.war", "2.war", log);
+
+    // common.jar (2 classes, 6 bytes) and y.Y (1 class, 5 bytes), but not the unsafe x.Same
+    assertEquals("INFO Shared lib candidates total (safe only): 3 classes, 11 class bytes saved",
+            log.records.get(log.records.size() - 1));
+    assertTrue(log.records.containsAll(Arrays.asList(
+            "INFO     [x-1.0.jar], [x-2.0.jar]: 1 classes, 3 class bytes saved, UNSAFE",
+            "INFO     [y-1.0.jar], [y-2.0.jar]: 1 classes, 5 class bytes saved")));
+  }
+
+  @Test
+  public void noCandidates() throws IOException {
+    Path war1 = TestZips.writeZip(tmpDir.resolve("1.war"), "WEB-INF/lib/a.jar", TestZips.zip("a/A.class", "A"));
+    Path war2 = TestZips.writeZip(tmpDir.resolve("2.war"), "WEB-INF/lib/b.jar", TestZips.zip("b/B.class", "B"));
+
+    RecordingLog log = new RecordingLog();
+    SharedLibAdvisor.report(advise(war1, war2, null), "1.war", "2.war", log);
+
+    assertEquals(Collections.singletonList("INFO No shared lib candidates found."), log.records);
+  }
+
+  private static SharedLibAdvisor.SharedLibAdvice advise(Path war1File, Path war2File, Path serverLibDir) throws IOException {
+    try (WarImpl war1 = new WarImpl(war1File.toFile());
+         WarImpl war2 = new WarImpl(war2File.toFile());
+         ServerLibImpl serverLib = serverLibDir == null ? null : new ServerLibImpl(serverLibDir, null)) {
+      return SharedLibAdvisor.advise(CollisionAnalyzer.analyzeCollisions(war1, war2, serverLib));
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package org.jepria.tools.mavenplugin.collisioncheck;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Builds the test jars and wars
+ */
+class TestZips {
+
+  /**
+   * @param namesAndContents entry name, entry content ({@code String} or {@code byte[]}, e.g. a nested jar), ...
+   * @return the zip file content
+   */
+  static byte[] zip(Object... namesAndContents) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+      for (int i = 0; i < namesAndContents.length; i += 2) {
+        Object content = namesAndContents[i + 1];
+        out.putNextEntry(new ZipEntry((String) namesAndContents[i]));
+        out.write(content instanceof byte[] ? (byte[]) content : ((String) content).getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @param file
+   * @param namesAndContents see {@link #zip}
+   * @return the file
+   */
+  static Path writeZip(Path file, Object... namesAndContents) throws IOException {
+    Files.write(file, zip(namesAndContents));
+    return file;
+  }
+
+  static void deleteRecursively(Path dir) throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      List<Path> sorted = paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+      for (Path path : sorted) {
+        Files.delete(path);
+      }
+    }
+  }
+}